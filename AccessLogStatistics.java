@@ -0,0 +1,266 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Gather statistics from a web server log in the Apache combined
+ * format: the busiest clients and URLs, how many distinct clients
+ * and URLs there were, status codes and bytes sent.
+ *
+ * Memory use is fixed however large the log is. The busiest keys are
+ * tracked by Space-Saving counters, any client's count can be
+ * estimated from a Count-Min sketch, and distinct keys are counted
+ * with HyperLogLog estimators.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class AccessLogStatistics
+{
+    // The size of each block read from the file.
+    private static final int BLOCK_SIZE = 64 * 1024;
+    // The number of clients and URLs to keep counters for.
+    private static final int TRACKED_KEYS = 100;
+
+    // Used to break up each line.
+    private CombinedLogParser parser;
+    // The busiest clients and URLs.
+    private SpaceSavingCounter topClients;
+    private SpaceSavingCounter topPaths;
+    // Approximate request counts for every client.
+    private CountMinSketch clientCounts;
+    // Approximate numbers of distinct clients and URLs.
+    private HyperLogLog distinctClients;
+    private HyperLogLog distinctPaths;
+    // The number of responses with each status code (100-599).
+    private long[] statusCounts;
+    // Totals over all lines read.
+    private long lines;
+    private long badLines;
+    private long totalBytes;
+
+    /**
+     * Create an empty set of statistics.
+     */
+    public AccessLogStatistics()
+    {
+        parser = new CombinedLogParser();
+        topClients = new SpaceSavingCounter(TRACKED_KEYS);
+        topPaths = new SpaceSavingCounter(TRACKED_KEYS);
+        clientCounts = new CountMinSketch(1 << 16, 4);
+        distinctClients = new HyperLogLog(14);
+        distinctPaths = new HyperLogLog(14);
+        statusCounts = new long[600];
+    }
+
+    /**
+     * Read a log file and add every line to the statistics.
+     * The file is found in the same way as by LogfileReader.
+     * @param filename The file of log data.
+     * @return true if the file was read, false otherwise.
+     */
+    public boolean analyzeFile(String filename)
+    {
+        try {
+            // Locate the file with respect to the current environment.
+            URL fileURL = getClass().getClassLoader().getResource(filename);
+            if(fileURL == null) {
+                System.out.println("Failed to find the data file: " + filename);
+                return false;
+            }
+            try(InputStream in = new FileInputStream(new File(fileURL.toURI()))) {
+                readLines(in);
+            }
+            return true;
+        }
+        catch(IOException | URISyntaxException e) {
+            System.out.println("Problem encountered: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Add one line to the statistics.
+     * @param buffer The bytes holding the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index one past the last byte (not including the line ending).
+     */
+    public void addLine(byte[] buffer, int start, int end)
+    {
+        if(end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if(end == start) {
+            return;
+        }
+        lines++;
+        if(!parser.parse(buffer, start, end)) {
+            badLines++;
+            return;
+        }
+        int hostStart = parser.getStart(CombinedLogParser.HOST);
+        int hostEnd = parser.getEnd(CombinedLogParser.HOST);
+        long clientHash = SliceHash.hash(buffer, hostStart, hostEnd);
+        topClients.offer(buffer, hostStart, hostEnd, clientHash);
+        clientCounts.add(clientHash);
+        distinctClients.add(clientHash);
+
+        int pathStart = parser.getStart(CombinedLogParser.PATH);
+        int pathEnd = parser.getEnd(CombinedLogParser.PATH);
+        long pathHash = SliceHash.hash(buffer, pathStart, pathEnd);
+        topPaths.offer(buffer, pathStart, pathEnd, pathHash);
+        distinctPaths.add(pathHash);
+
+        int status = parser.getStatus();
+        if(status < statusCounts.length) {
+            statusCounts[status]++;
+        }
+        totalBytes += parser.getBytes();
+    }
+
+    /**
+     * Return the busiest clients, busiest first.
+     * @param n The most clients to return.
+     * @return The client addresses.
+     */
+    public String[] getTopClients(int n)
+    {
+        return topClients.getTopKeys(n);
+    }
+
+    /**
+     * Return the busiest URLs, busiest first.
+     * @param n The most URLs to return.
+     * @return The request paths.
+     */
+    public String[] getTopPaths(int n)
+    {
+        return topPaths.getTopKeys(n);
+    }
+
+    /**
+     * Estimate the number of requests made by a client.
+     * @param client The client address.
+     * @return The estimated number of requests (never too low).
+     */
+    public long estimateClientRequests(String client)
+    {
+        byte[] bytes = client.getBytes(StandardCharsets.ISO_8859_1);
+        return clientCounts.estimate(SliceHash.hash(bytes, 0, bytes.length));
+    }
+
+    /**
+     * Estimate the number of different clients.
+     * @return The estimated number of distinct client addresses.
+     */
+    public long getDistinctClients()
+    {
+        return distinctClients.estimate();
+    }
+
+    /**
+     * Estimate the number of different URLs.
+     * @return The estimated number of distinct request paths.
+     */
+    public long getDistinctPaths()
+    {
+        return distinctPaths.estimate();
+    }
+
+    /**
+     * Return the number of responses with a status code.
+     * @param status The status code, e.g. 404.
+     * @return The number of responses with that status.
+     */
+    public long getStatusCount(int status)
+    {
+        return status >= 0 && status < statusCounts.length ? statusCounts[status] : 0;
+    }
+
+    /**
+     * Return the number of non-empty lines read.
+     * @return The line count.
+     */
+    public long getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * Return the number of lines that were not in the combined format.
+     * @return The bad line count.
+     */
+    public long getBadLines()
+    {
+        return badLines;
+    }
+
+    /**
+     * Return the total number of bytes sent.
+     * @return The sum of the bytes field.
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * Print a summary of the statistics.
+     * @param n The number of top clients and URLs to show.
+     */
+    public void printSummary(int n)
+    {
+        System.out.println("Lines: " + lines + " (unreadable: " + badLines + ")");
+        System.out.println("Bytes sent: " + totalBytes);
+        System.out.println("Distinct clients (approx.): " + getDistinctClients());
+        System.out.println("Distinct URLs (approx.): " + getDistinctPaths());
+        System.out.println("Top clients:");
+        topClients.printTop(n);
+        System.out.println("Top URLs:");
+        topPaths.printTop(n);
+        System.out.println("Status: Count");
+        for(int status = 0; status < statusCounts.length; status++) {
+            if(statusCounts[status] > 0) {
+                System.out.println(status + ": " + statusCounts[status]);
+            }
+        }
+    }
+
+    /**
+     * Read a stream in blocks and pass each line to addLine.
+     * A line split across two blocks is moved to the front of
+     * the buffer before the next block is read.
+     * @param in The stream to read.
+     * @throws IOException If the stream cannot be read.
+     */
+    private void readLines(InputStream in) throws IOException
+    {
+        byte[] buffer = new byte[BLOCK_SIZE];
+        int filled = 0;
+        int read;
+        while((read = in.read(buffer, filled, buffer.length - filled)) > 0) {
+            filled += read;
+            int lineStart = 0;
+            for(int i = 0; i < filled; i++) {
+                if(buffer[i] == '\n') {
+                    addLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            // Keep the unfinished line, growing the buffer if it fills it.
+            filled -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, filled);
+            if(filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        if(filled > 0) {
+            addLine(buffer, 0, filled);
+        }
+    }
+}
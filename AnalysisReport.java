@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * The results of analysing one log file, collected together so
+ * that they can be rendered or shared. A report never changes once
+ * it has been created, so it may be used by several threads at once.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class AnalysisReport
+{
+    // The name of the log file.
+    private final String name;
+    // Copies of the access counts (days and months start at index 1).
+    private final int[] hourCounts;
+    private final int[] dayCounts;
+    private final int[] monthCounts;
+    // The answers to the analyzer's queries.
+    private final int numberOfAccesses;
+    private final int busiestHour;
+    private final int quietestHour;
+    private final int busiestTwoHour;
+    private final int busiestDay;
+    private final int quietestDay;
+    private final int busiestMonth;
+    private final int quietestMonth;
+    private final int totalAccessesPerMonth;
+    private final double averageAccessesPerMonth;
+
+    /**
+     * Create a report from an analyzer whose data has been analyzed.
+     * @param name The name of the log file.
+     * @param analyzer The analyzer to take the results from.
+     */
+    public AnalysisReport(String name, LogAnalyzer analyzer)
+    {
+        this.name = name;
+        hourCounts = analyzer.getHourCounts();
+        dayCounts = analyzer.getDayCounts();
+        monthCounts = analyzer.getMonthCounts();
+        numberOfAccesses = analyzer.numberOfAccesses();
+        busiestHour = analyzer.busiestHour();
+        quietestHour = analyzer.quietestHour();
+        busiestTwoHour = analyzer.busiestTwoHour();
+        busiestDay = analyzer.busiestDay();
+        quietestDay = analyzer.quietestDay();
+        busiestMonth = analyzer.busiestMonth();
+        quietestMonth = analyzer.quietestMonth();
+        totalAccessesPerMonth = analyzer.totalAccessesPerMonth();
+        averageAccessesPerMonth = analyzer.averageAccessesPerMonth();
+    }
+
+    /**
+     * @return The name of the log file.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return A copy of the hourly access counts (index 0-23).
+     */
+    public int[] getHourCounts()
+    {
+        return Arrays.copyOf(hourCounts, hourCounts.length);
+    }
+
+    /**
+     * @return A copy of the daily access counts (index 1-31).
+     */
+    public int[] getDayCounts()
+    {
+        return Arrays.copyOf(dayCounts, dayCounts.length);
+    }
+
+    /**
+     * @return A copy of the monthly access counts (index 1-12).
+     */
+    public int[] getMonthCounts()
+    {
+        return Arrays.copyOf(monthCounts, monthCounts.length);
+    }
+
+    /**
+     * Return the count for one hour without copying the array.
+     * @param hour The hour (0-23).
+     * @return The number of accesses in that hour.
+     */
+    public int getHourCount(int hour)
+    {
+        return hourCounts[hour];
+    }
+
+    /**
+     * Return the count for one day without copying the array.
+     * @param day The day (1-31).
+     * @return The number of accesses on that day of the month.
+     */
+    public int getDayCount(int day)
+    {
+        return dayCounts[day];
+    }
+
+    /**
+     * Return the count for one month without copying the array.
+     * @param month The month (1-12).
+     * @return The number of accesses in that month.
+     */
+    public int getMonthCount(int month)
+    {
+        return monthCounts[month];
+    }
+
+    /**
+     * @return The number of days in the daily counts, plus one.
+     */
+    public int getDayCountLength()
+    {
+        return dayCounts.length;
+    }
+
+    /**
+     * @return The number of months in the monthly counts, plus one.
+     */
+    public int getMonthCountLength()
+    {
+        return monthCounts.length;
+    }
+
+    /**
+     * @return The total number of accesses.
+     */
+    public int getNumberOfAccesses()
+    {
+        return numberOfAccesses;
+    }
+
+    /**
+     * @return The busiest hour.
+     */
+    public int getBusiestHour()
+    {
+        return busiestHour;
+    }
+
+    /**
+     * @return The quietest hour.
+     */
+    public int getQuietestHour()
+    {
+        return quietestHour;
+    }
+
+    /**
+     * @return The first hour of the busiest two hour period.
+     */
+    public int getBusiestTwoHour()
+    {
+        return busiestTwoHour;
+    }
+
+    /**
+     * @return The busiest day of the month.
+     */
+    public int getBusiestDay()
+    {
+        return busiestDay;
+    }
+
+    /**
+     * @return The quietest day of the month with any accesses.
+     */
+    public int getQuietestDay()
+    {
+        return quietestDay;
+    }
+
+    /**
+     * @return The busiest month.
+     */
+    public int getBusiestMonth()
+    {
+        return busiestMonth;
+    }
+
+    /**
+     * @return The quietest month with any accesses.
+     */
+    public int getQuietestMonth()
+    {
+        return quietestMonth;
+    }
+
+    /**
+     * @return The total of the monthly access counts.
+     */
+    public int getTotalAccessesPerMonth()
+    {
+        return totalAccessesPerMonth;
+    }
+
+    /**
+     * @return The average number of accesses per month.
+     */
+    public double getAverageAccessesPerMonth()
+    {
+        return averageAccessesPerMonth;
+    }
+}
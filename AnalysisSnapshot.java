@@ -0,0 +1,295 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything a LogQueryService needs to answer queries about one
+ * log file, worked out in advance. A snapshot never changes once it
+ * has been created, so any number of threads can read it without
+ * locking. Answers that do not depend on the query are rendered to
+ * JSON when the snapshot is made.
+ *
+ * The log is read by a LogIngestPipeline, a block at a time, and only
+ * the number of accesses in each minute is kept, so memory does not
+ * grow with the size of the log. A new snapshot can be made from an
+ * old one by reading just the lines added to the log since then.
+ *
+ * Unlike LogfileReader, a snapshot never falls back to simulated data,
+ * and lines that cannot be read are skipped rather than stopping the
+ * load. A last line without a newline may still be being written, so
+ * it is left until it is finished.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class AnalysisSnapshot
+{
+    // The analysis results.
+    private final AnalysisReport report;
+    // Each minute with accesses (minutes since 1970, ascending), and the
+    // number of accesses before each of them (with the total at the end).
+    private final long[] minutes;
+    private final long[] accessesBefore;
+    // Ready-made JSON responses, keyed by request path.
+    private final Map<String, byte[]> responses;
+    // When the snapshot was made (milliseconds since 1970).
+    private final long createdMillis;
+    // When the log file had last been changed, and its length,
+    // as seen before reading it.
+    private final long fileModified;
+    private final long fileLength;
+    // Where in the file reading stopped: just after the last line read.
+    private final long endOffset;
+    // The number of non-empty lines that could not be read.
+    private final long badLines;
+
+    /**
+     * Read and analyze a log file and prepare the responses.
+     * @param filename The file of log data.
+     * @throws IOException If the file cannot be found or read.
+     */
+    public AnalysisSnapshot(String filename) throws IOException
+    {
+        this(filename, null);
+    }
+
+    /**
+     * Bring a snapshot up to date by reading only the lines added to
+     * the log since it was made. If the file is now shorter than what
+     * was read before, it has been replaced, so it is read from the start.
+     * @param filename The file of log data.
+     * @param previous The snapshot to bring up to date, or null to read the whole file.
+     * @throws IOException If the file cannot be found or read.
+     */
+    public AnalysisSnapshot(String filename, AnalysisSnapshot previous) throws IOException
+    {
+        File file = locate(filename);
+        fileModified = file.lastModified();
+        fileLength = file.length();
+        if(previous != null && fileLength < previous.endOffset) {
+            previous = null;
+        }
+
+        LogIngestPipeline pipeline = new LogIngestPipeline(filename);
+        pipeline.runFrom(previous == null ? 0 : previous.endOffset);
+        endOffset = pipeline.getEndOffset();
+
+        LogAnalyzer analyzer = new LogAnalyzer(filename);
+        if(previous == null) {
+            minutes = pipeline.getMinutes();
+            accessesBefore = runningTotals(pipeline.getMinuteCounts());
+            badLines = pipeline.getBadLines();
+        }
+        else {
+            AnalysisReport old = previous.report;
+            analyzer.addCounts(old.getHourCounts(), old.getDayCounts(), old.getMonthCounts());
+            long[] added = pipeline.getMinutes();
+            long[] addedCounts = pipeline.getMinuteCounts();
+            // Merge the two lists of minutes, adding the counts of any in both.
+            long[] merged = new long[previous.minutes.length + added.length];
+            long[] mergedCounts = new long[merged.length];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while(i < previous.minutes.length || j < added.length) {
+                if(j == added.length
+                   || (i < previous.minutes.length && previous.minutes[i] < added[j])) {
+                    merged[n] = previous.minutes[i];
+                    mergedCounts[n++] = previous.countAt(i++);
+                }
+                else if(i == previous.minutes.length || added[j] < previous.minutes[i]) {
+                    merged[n] = added[j];
+                    mergedCounts[n++] = addedCounts[j++];
+                }
+                else {
+                    merged[n] = added[j];
+                    mergedCounts[n++] = previous.countAt(i++) + addedCounts[j++];
+                }
+            }
+            minutes = Arrays.copyOf(merged, n);
+            accessesBefore = runningTotals(Arrays.copyOf(mergedCounts, n));
+            badLines = previous.badLines + pipeline.getBadLines();
+        }
+        analyzer.addCounts(pipeline.getHourCounts(), pipeline.getDayCounts(),
+                           pipeline.getMonthCounts());
+        report = analyzer.createReport();
+        createdMillis = System.currentTimeMillis();
+
+        Map<String, byte[]> rendered = new HashMap<>();
+        ByteBuffer full = new ReportRenderer().render(report, ReportFormat.JSON);
+        rendered.put("/report", Arrays.copyOfRange(full.array(), 0, full.limit()));
+        rendered.put("/busiestHour", json("{\"busiestHour\":" + report.getBusiestHour() + "}"));
+        rendered.put("/busiestDay", json("{\"busiestDay\":" + report.getBusiestDay() + "}"));
+        rendered.put("/busiestMonth",
+                     json("{\"busiestMonth\":" + report.getBusiestMonth() + "}"));
+        rendered.put("/histogram/hour", json("{\"hourly\":"
+                     + Arrays.toString(report.getHourCounts()).replace(" ", "") + "}"));
+        // Days and months are 1-based, so index 0 is left out.
+        int[] days = report.getDayCounts();
+        rendered.put("/histogram/day", json("{\"daily\":"
+                     + Arrays.toString(Arrays.copyOfRange(days, 1, days.length))
+                         .replace(" ", "") + "}"));
+        int[] months = report.getMonthCounts();
+        rendered.put("/histogram/month", json("{\"monthly\":"
+                     + Arrays.toString(Arrays.copyOfRange(months, 1, months.length))
+                         .replace(" ", "") + "}"));
+        responses = Collections.unmodifiableMap(rendered);
+    }
+
+    /**
+     * Return the ready-made response for a path.
+     * The array is shared, so it must not be changed.
+     * @param path The request path, e.g. "/busiestHour".
+     * @return The JSON response, or null if the path needs a query.
+     */
+    public byte[] getResponse(String path)
+    {
+        return responses.get(path);
+    }
+
+    /**
+     * Count the accesses in a range of time.
+     * @param fromMinute The first minute to count (minutes since 1970).
+     * @param toMinute The minute after the last one to count.
+     * @return The number of accesses from fromMinute up to, but not including, toMinute.
+     */
+    public long countBetween(long fromMinute, long toMinute)
+    {
+        if(toMinute <= fromMinute) {
+            return 0;
+        }
+        return accessesBefore[firstAtOrAfter(toMinute)]
+               - accessesBefore[firstAtOrAfter(fromMinute)];
+    }
+
+    /**
+     * @return The analysis results.
+     */
+    public AnalysisReport getReport()
+    {
+        return report;
+    }
+
+    /**
+     * @return When the snapshot was made, in milliseconds since 1970.
+     */
+    public long getCreatedMillis()
+    {
+        return createdMillis;
+    }
+
+    /**
+     * @return When the log file had last been changed when this snapshot read it.
+     */
+    public long getFileModified()
+    {
+        return fileModified;
+    }
+
+    /**
+     * @return The length of the log file when this snapshot read it.
+     */
+    public long getFileLength()
+    {
+        return fileLength;
+    }
+
+    /**
+     * @return The position in the log file just after the last line read.
+     */
+    public long getEndOffset()
+    {
+        return endOffset;
+    }
+
+    /**
+     * @return The number of non-empty lines that could not be read.
+     */
+    public long getBadLines()
+    {
+        return badLines;
+    }
+
+    /**
+     * Find a log file in the same way as LogfileReader.
+     * @param filename The name of the file.
+     * @return The file.
+     * @throws FileNotFoundException If there is no such file.
+     */
+    public static File locate(String filename) throws FileNotFoundException
+    {
+        URL fileURL = AnalysisSnapshot.class.getClassLoader().getResource(filename);
+        if(fileURL == null) {
+            throw new FileNotFoundException(filename);
+        }
+        try {
+            return new File(fileURL.toURI());
+        }
+        catch(URISyntaxException | IllegalArgumentException e) {
+            throw new FileNotFoundException(filename + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Return the number of accesses in one of the minutes.
+     * @param i The index of the minute.
+     * @return Its number of accesses.
+     */
+    private long countAt(int i)
+    {
+        return accessesBefore[i + 1] - accessesBefore[i];
+    }
+
+    /**
+     * Turn counts into running totals.
+     * @param counts The counts.
+     * @return The total before each count, followed by the overall total.
+     */
+    private static long[] runningTotals(long[] counts)
+    {
+        long[] totals = new long[counts.length + 1];
+        for(int i = 0; i < counts.length; i++) {
+            totals[i + 1] = totals[i] + counts[i];
+        }
+        return totals;
+    }
+
+    /**
+     * Find the first minute with accesses at or after a minute by binary search.
+     * @param minute The minute to look for.
+     * @return The index of the first such minute (the number of minutes if there is none).
+     */
+    private int firstAtOrAfter(long minute)
+    {
+        int low = 0;
+        int high = minutes.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(minutes[middle] < minute) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Convert a JSON string to bytes ending in a newline.
+     * @param text The JSON text.
+     * @return The bytes to send.
+     */
+    private static byte[] json(String text)
+    {
+        return (text + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A fixed-size queue that any number of threads may add to and
+ * take from at the same time without locking. It is a ring of slots,
+ * each with a sequence number that tells a thread whether the slot
+ * is ready to be filled or emptied (Dmitry Vyukov's bounded queue).
+ *
+ * When the queue is full, put() waits for room, so a fast producer
+ * is held back to the speed of its consumers.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ * @param <E> The type of item held.
+ */
+public class BoundedQueue<E>
+{
+    // How many times to spin before sleeping briefly while waiting.
+    private static final int SPINS = 100;
+    // How long to sleep each time after spinning, in nanoseconds.
+    private static final long PARK_NANOS = 20_000;
+
+    // The items, and the sequence number of each slot.
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    // Used to turn a position into a slot index.
+    private final int mask;
+    // The next position to add to and to take from.
+    private final AtomicLong tail;
+    private final AtomicLong head;
+
+    /**
+     * Create an empty queue.
+     * @param capacity The most items it can hold; rounded up to a power of two.
+     */
+    public BoundedQueue(int capacity)
+    {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        tail = new AtomicLong();
+        head = new AtomicLong();
+    }
+
+    /**
+     * Add an item if there is room.
+     * @param item The item to add (not null).
+     * @return true if it was added, false if the queue was full.
+     */
+    public boolean offer(E item)
+    {
+        long position = tail.get();
+        while(true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    // Publishes the item to the thread that takes it.
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if(difference < 0) {
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the oldest item if there is one.
+     * @return The item, or null if the queue was empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll()
+    {
+        long position = head.get();
+        while(true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if(difference == 0) {
+                if(head.compareAndSet(position, position + 1)) {
+                    E item = (E) items[index];
+                    items[index] = null;
+                    // Frees the slot for the lap after this one.
+                    sequences.set(index, position + mask + 1);
+                    return item;
+                }
+                position = head.get();
+            }
+            else if(difference < 0) {
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Add an item, waiting for room if the queue is full.
+     * @param item The item to add (not null).
+     */
+    public void put(E item)
+    {
+        int tries = 0;
+        while(!offer(item)) {
+            tries = pause(tries);
+        }
+    }
+
+    /**
+     * Take the oldest item, waiting for one if the queue is empty.
+     * @return The item.
+     */
+    public E take()
+    {
+        int tries = 0;
+        E item;
+        while((item = poll()) == null) {
+            tries = pause(tries);
+        }
+        return item;
+    }
+
+    /**
+     * Take the oldest item, waiting for one if the queue is empty,
+     * unless the wait is called off.
+     * @param stop Checked while waiting; the wait ends when it returns true.
+     * @return The item, or null if the wait was called off.
+     */
+    public E take(BooleanSupplier stop)
+    {
+        int tries = 0;
+        E item;
+        while((item = poll()) == null) {
+            if(stop.getAsBoolean()) {
+                return null;
+            }
+            tries = pause(tries);
+        }
+        return item;
+    }
+
+    /**
+     * Wait a little before trying again: spin at first, then sleep.
+     * @param tries How many times we have waited so far.
+     * @return The new number of tries.
+     */
+    private static int pause(int tries)
+    {
+        if(tries < SPINS) {
+            Thread.onSpinWait();
+        }
+        else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return tries + 1;
+    }
+}
@@ -0,0 +1,401 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Break up a line in the Apache "combined" log format:
+ *
+ *    host ident user [dd/Mon/yyyy:hh:mm:ss zone] "method path protocol" status bytes "referer" "agent"
+ *
+ * The line is read straight from a byte array. Rather than creating
+ * a String for each field, the parser records where each field starts
+ * and ends in the array; the numeric fields are converted to ints.
+ * One parser can be reused for every line of a file.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class CombinedLogParser
+{
+    // The index of each field in the start and end arrays.
+    public static final int HOST = 0, IDENT = 1, USER = 2, TIME = 3,
+                            METHOD = 4, PATH = 5, PROTOCOL = 6,
+                            STATUS = 7, BYTES = 8, REFERER = 9, AGENT = 10;
+    // The number of fields.
+    private static final int NUMBER_OF_FIELDS = 11;
+    // Month abbreviations as they appear in the time field.
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    // The array holding the most recently parsed line.
+    private byte[] buffer;
+    // Where each field starts, and one past where it ends.
+    private int[] starts;
+    private int[] ends;
+    // Numeric values from the line.
+    private int year, month, day, hour, minute;
+    // The server's offset from UTC in minutes, e.g. -420 for -0700.
+    private int offsetMinutes;
+    private int status;
+    private long bytes;
+
+    /**
+     * Create a parser.
+     */
+    public CombinedLogParser()
+    {
+        starts = new int[NUMBER_OF_FIELDS];
+        ends = new int[NUMBER_OF_FIELDS];
+    }
+
+    /**
+     * Parse one line. The line must not include its line ending.
+     * The fields remain valid until the next call, provided the
+     * contents of the buffer are not changed.
+     * @param buffer The bytes holding the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index one past the last byte of the line.
+     * @return true if the line was in the expected format.
+     */
+    public boolean parse(byte[] buffer, int start, int end)
+    {
+        this.buffer = buffer;
+        int pos = start;
+        // host, ident and user are separated by single spaces.
+        for(int field = HOST; field <= USER; field++) {
+            pos = token(field, pos, end);
+            if(pos < 0) {
+                return false;
+            }
+        }
+        // [time]
+        if(pos >= end || buffer[pos] != '[') {
+            return false;
+        }
+        int close = indexOf((byte) ']', pos + 1, end);
+        if(close < 0 || !parseTime(pos + 1, close)) {
+            return false;
+        }
+        starts[TIME] = pos + 1;
+        ends[TIME] = close;
+        pos = skipSpaces(close + 1, end);
+        // "method path protocol"
+        pos = quoted(METHOD, pos, end);
+        if(pos < 0) {
+            return false;
+        }
+        splitRequest(starts[METHOD], ends[METHOD]);
+        // status bytes
+        pos = token(STATUS, pos, end);
+        if(pos < 0) {
+            return false;
+        }
+        status = parseInt(starts[STATUS], ends[STATUS]);
+        if(status < 0) {
+            return false;
+        }
+        pos = token(BYTES, pos, end);
+        if(pos < 0) {
+            return false;
+        }
+        bytes = isDash(BYTES) ? 0 : parseLong(starts[BYTES], ends[BYTES]);
+        if(bytes < 0) {
+            return false;
+        }
+        // "referer" "agent" are missing in the common log format.
+        starts[REFERER] = ends[REFERER] = pos;
+        starts[AGENT] = ends[AGENT] = pos;
+        if(pos < end) {
+            pos = quoted(REFERER, pos, end);
+            if(pos >= 0 && pos < end) {
+                quoted(AGENT, pos, end);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the array holding the most recently parsed line.
+     * @return The buffer given to parse().
+     */
+    public byte[] getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Return where a field starts.
+     * @param field The field, e.g. HOST or PATH.
+     * @return The index of its first byte in the buffer.
+     */
+    public int getStart(int field)
+    {
+        return starts[field];
+    }
+
+    /**
+     * Return where a field ends.
+     * @param field The field, e.g. HOST or PATH.
+     * @return The index one past its last byte in the buffer.
+     */
+    public int getEnd(int field)
+    {
+        return ends[field];
+    }
+
+    /**
+     * Return a copy of a field as a String. This allocates,
+     * so it is meant for display rather than bulk processing.
+     * @param field The field, e.g. HOST or PATH.
+     * @return The text of the field.
+     */
+    public String getField(int field)
+    {
+        return new String(buffer, starts[field], ends[field] - starts[field],
+                          StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Return the HTTP status code.
+     * @return The status, e.g. 200.
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * Return the size of the response.
+     * @return The number of bytes sent (0 when logged as "-").
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Return the date and time of the request as a LogEntry,
+     * so that it can be analysed like the simple log format.
+     * The time is the server's local time, as written in the log.
+     * @return A LogEntry for the local time of this line.
+     */
+    public LogEntry toLogEntry()
+    {
+        return new LogEntry(year, month, day, hour, minute);
+    }
+
+    /**
+     * Return the server's offset from UTC.
+     * @return The offset in minutes, e.g. -420 for -0700 (0 if none was logged).
+     */
+    public int getOffsetMinutes()
+    {
+        return offsetMinutes;
+    }
+
+    /**
+     * Return the minute of the request in UTC, so that lines from
+     * servers in different time zones can be compared.
+     * @return The number of minutes since midnight UTC on 1st January 1970.
+     */
+    public long getEpochMinute()
+    {
+        return LogEntry.epochDay(year, month, day) * 1440L + hour * 60 + minute
+               - offsetMinutes;
+    }
+
+    /**
+     * Record a field that ends at the next space.
+     * @param field The field being read.
+     * @param pos Where the field starts.
+     * @param end The end of the line.
+     * @return Where the next field starts, or -1 if the field is empty.
+     */
+    private int token(int field, int pos, int end)
+    {
+        int stop = pos;
+        while(stop < end && buffer[stop] != ' ') {
+            stop++;
+        }
+        if(stop == pos) {
+            return -1;
+        }
+        starts[field] = pos;
+        ends[field] = stop;
+        return skipSpaces(stop, end);
+    }
+
+    /**
+     * Record a field in double quotes, allowing \" inside it.
+     * @param field The field being read.
+     * @param pos Where the opening quote should be.
+     * @param end The end of the line.
+     * @return Where the next field starts, or -1 if there is no quoted field.
+     */
+    private int quoted(int field, int pos, int end)
+    {
+        if(pos >= end || buffer[pos] != '"') {
+            return -1;
+        }
+        int stop = pos + 1;
+        while(stop < end && buffer[stop] != '"') {
+            if(buffer[stop] == '\\') {
+                stop++;
+            }
+            stop++;
+        }
+        if(stop >= end) {
+            return -1;
+        }
+        starts[field] = pos + 1;
+        ends[field] = stop;
+        return skipSpaces(stop + 1, end);
+    }
+
+    /**
+     * Divide the request into method, path and protocol.
+     * A request with fewer parts leaves the missing fields empty.
+     * @param start The start of the request text.
+     * @param end The end of the request text.
+     */
+    private void splitRequest(int start, int end)
+    {
+        int first = indexOf((byte) ' ', start, end);
+        if(first < 0) {
+            // No spaces: treat it all as the path.
+            starts[PATH] = start;
+            ends[PATH] = end;
+            ends[METHOD] = start;
+            starts[PROTOCOL] = ends[PROTOCOL] = end;
+            return;
+        }
+        ends[METHOD] = first;
+        starts[PATH] = first + 1;
+        int second = indexOf((byte) ' ', first + 1, end);
+        if(second < 0) {
+            ends[PATH] = end;
+            starts[PROTOCOL] = ends[PROTOCOL] = end;
+        }
+        else {
+            ends[PATH] = second;
+            starts[PROTOCOL] = second + 1;
+            ends[PROTOCOL] = end;
+        }
+    }
+
+    /**
+     * Read the date and time from dd/Mon/yyyy:hh:mm:ss +hhmm.
+     * The zone may be left out, in which case UTC is assumed;
+     * anything else after the seconds makes the time unreadable.
+     * @param start The start of the time text.
+     * @param end The end of the time text.
+     * @return true if the time was in the expected format and range.
+     */
+    private boolean parseTime(int start, int end)
+    {
+        int length = end - start;
+        if((length != 20 && length != 26) || buffer[start + 2] != '/'
+           || buffer[start + 6] != '/' || buffer[start + 11] != ':'
+           || buffer[start + 14] != ':' || buffer[start + 17] != ':') {
+            return false;
+        }
+        day = parseInt(start, start + 2);
+        year = parseInt(start + 7, start + 11);
+        hour = parseInt(start + 12, start + 14);
+        minute = parseInt(start + 15, start + 17);
+        int second = parseInt(start + 18, start + 20);
+        month = 0;
+        for(int m = 0; m < 12; m++) {
+            if(buffer[start + 3] == MONTHS.charAt(m * 3)
+               && buffer[start + 4] == MONTHS.charAt(m * 3 + 1)
+               && buffer[start + 5] == MONTHS.charAt(m * 3 + 2)) {
+                month = m + 1;
+            }
+        }
+        offsetMinutes = 0;
+        if(length == 26) {
+            byte sign = buffer[start + 21];
+            int offsetHours = parseInt(start + 22, start + 24);
+            int offsetRest = parseInt(start + 24, start + 26);
+            if(buffer[start + 20] != ' ' || (sign != '+' && sign != '-')
+               || offsetHours < 0 || offsetHours > 14 || offsetRest < 0 || offsetRest > 59) {
+                return false;
+            }
+            offsetMinutes = (sign == '-' ? -1 : 1) * (offsetHours * 60 + offsetRest);
+        }
+        return month > 0 && day >= 1 && day <= 31 && year >= 0
+               && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59
+               && second >= 0 && second <= 59;
+    }
+
+    /**
+     * Convert a run of up to 9 digits to an int.
+     * @param start The index of the first digit.
+     * @param end The index one past the last digit.
+     * @return The value, or -1 if it is not a number.
+     */
+    private int parseInt(int start, int end)
+    {
+        return end - start > 9 ? -1 : (int) parseLong(start, end);
+    }
+
+    /**
+     * Convert a run of up to 18 digits to a long.
+     * @param start The index of the first digit.
+     * @param end The index one past the last digit.
+     * @return The value, or -1 if it is not a number.
+     */
+    private long parseLong(int start, int end)
+    {
+        if(start == end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for(int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if(digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Is a field just "-"?
+     * @param field The field to check.
+     * @return true if the field is a single dash.
+     */
+    private boolean isDash(int field)
+    {
+        return ends[field] - starts[field] == 1 && buffer[starts[field]] == '-';
+    }
+
+    /**
+     * Find a byte in part of the buffer.
+     * @param b The byte to find.
+     * @param start Where to start looking.
+     * @param end Where to stop looking.
+     * @return The index of the byte, or -1 if it is not there.
+     */
+    private int indexOf(byte b, int start, int end)
+    {
+        for(int i = start; i < end; i++) {
+            if(buffer[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Move past any spaces.
+     * @param pos Where to start.
+     * @param end The end of the line.
+     * @return The index of the next non-space.
+     */
+    private int skipSpaces(int pos, int end)
+    {
+        while(pos < end && buffer[pos] == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+}
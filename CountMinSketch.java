@@ -0,0 +1,77 @@
+/**
+ * Estimate how often keys occur using a fixed table of counters
+ * (a Count-Min sketch). The estimate is never too low, and is too
+ * high by at most about total/width with high probability.
+ *
+ * Keys are given as 64-bit hashes, e.g. from SliceHash.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class CountMinSketch
+{
+    // The counters, one row of width after another.
+    private long[] counts;
+    // The number of counters in each row (a power of two).
+    private int width;
+    // The number of rows.
+    private int depth;
+    // The total of everything added.
+    private long total;
+
+    /**
+     * Create a sketch.
+     * @param width The counters per row; rounded up to a power of two.
+     * @param depth The number of rows (more rows, fewer bad estimates).
+     */
+    public CountMinSketch(int width, int depth)
+    {
+        if(width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Width and depth must be positive.");
+        }
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        counts = new long[this.width * depth];
+    }
+
+    /**
+     * Count one occurrence of a key.
+     * @param hash The hash of the key.
+     */
+    public void add(long hash)
+    {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int mask = width - 1;
+        for(int row = 0; row < depth; row++) {
+            counts[row * width + ((h1 + row * h2) & mask)]++;
+        }
+        total++;
+    }
+
+    /**
+     * Estimate how many times a key has been added.
+     * @param hash The hash of the key.
+     * @return The estimated count (never less than the true count).
+     */
+    public long estimate(long hash)
+    {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int mask = width - 1;
+        long min = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[row * width + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+
+    /**
+     * Return the number of keys added.
+     * @return The total count.
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+}
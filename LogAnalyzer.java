@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 /**
  * Read web server data and analyse hourly, daily and monthly access patterns.
  * Supplying your own filename is an added feature.
@@ -15,8 +17,10 @@ public class LogAnalyzer
     private int[] monthCounts;
     //Where to calculate the yearly access counts.
     private int[] yearCounts;
-    // Use a LogfileReader to access the data.
+    // Use a LogfileReader to access the data; created when first needed.
     private LogfileReader reader;
+    // The name of the log file being analyzed.
+    private String filename;
 
     /**
      * Constructor
@@ -41,8 +45,9 @@ public class LogAnalyzer
         // access counts, = 6 to adjust for array starting a 0.
         yearCounts = new int[6];
         
-        // Create the reader to obtain the data.
-        reader = new LogfileReader();
+        // The reader is created when the data is first needed,
+        // so that analyzeFile can read the file without it.
+        filename = "weblog.txt";
     }
 
     /**
@@ -69,8 +74,9 @@ public class LogAnalyzer
         // access counts, = 6 to adjust for array starting a 0.
         yearCounts = new int[6];
         
-        // Create the reader to obtain the data.
-        reader = new LogfileReader(filename);
+        // The reader is created when the data is first needed,
+        // so that analyzeFile can read the file without it.
+        this.filename = filename;
     } 
 
     /**
@@ -78,9 +84,24 @@ public class LogAnalyzer
      */
     public void analyzeData()
     {
+        analyzeData(null);
+    }
+
+    /**
+     * Analyze the hour, day, and month access data from the log file,
+     * passing each entry to an anomaly detector as it is counted.
+     * @param detector The detector to feed, or null for none.
+     */
+    public void analyzeData(TrafficAnomalyDetector detector)
+    {
+        LogfileReader reader = getReader();
         while(reader.hasNext())
         {
             LogEntry entry = reader.next();
+            if (detector != null)
+            {
+                detector.addEntry(entry);
+            }
             int hour = entry.getHour();
             hourCounts[hour]++;
             int day = entry.getDay();
@@ -104,8 +125,53 @@ public class LogAnalyzer
                 monthCounts[i] = 0;
             }
         } 
+        if (detector != null)
+        {
+            detector.finish();
+        }
     }    
       
+    /**
+     * Analyze the hour, day, and month access data by reading the log
+     * file in one pass, with reading, parsing and counting done on
+     * separate threads (see LogIngestPipeline). Use this instead of
+     * analyzeData for large files. If the file cannot be read, the
+     * simulated data from analyzeData is used instead.
+     */
+    public void analyzeFile()
+    {
+        LogIngestPipeline pipeline = new LogIngestPipeline(filename);
+        if (!pipeline.run())
+        {
+            analyzeData();
+            return;
+        }
+        addCounts(pipeline.getHourCounts(), pipeline.getDayCounts(),
+                  pipeline.getMonthCounts());
+    }
+
+    /**
+     * Add access counts worked out elsewhere to this analyzer's counts.
+     * @param hours The number of accesses in each hour (index 0-23).
+     * @param days The number of accesses on each day of the month (index 1-31).
+     * @param months The number of accesses in each month (index 1-12).
+     */
+    public void addCounts(int[] hours, int[] days, int[] months)
+    {
+        for (int hour = 0; hour < hourCounts.length; hour++)
+        {
+            hourCounts[hour] += hours[hour];
+        }
+        for (int day = 0; day < dayCounts.length; day++)
+        {
+            dayCounts[day] += days[day];
+        }
+        for (int month = 0; month < monthCounts.length; month++)
+        {
+            monthCounts[month] += months[month];
+        }
+    }
+
     /**
      * Find the busiest hour (most accesses) from the log file.
      * @return returns an integer for the busiest hour
@@ -215,21 +281,19 @@ public class LogAnalyzer
     }
 
     /**
-     * DISPLAYS and Returns the detail of the total number of accesses per month recorded in the log file.
+     * Returns the total number of accesses per month recorded in the log file.
+     * Use printReport() to display the detail for each month.
      * @return total is the int value of the total number of monthly accesses recorded 
      * in the log file.
      */
     public int totalAccessesPerMonth()
     {
         int total = 0;
-        System.out.println("Mo: Count");
         //Add the value in each element of monthCounts to total.
         for (int month = 1 ; month < monthCounts.length; month++)
         {
-            System.out.println(month + ": " + monthCounts[month]);
             total += monthCounts[month];
         }
-        System.out.println("Grand total of monthly accesses is: " + total);
         return total;
     }
     
@@ -270,24 +334,83 @@ public class LogAnalyzer
     }    
     
     /**
-     * Displays and returns the average number of Accesseses per month from the log file.
+     * Returns the average number of Accesseses per month from the log file.
      * @return returns a double with the average number of accesses per month
      */
     public double averageAccessesPerMonth() {
-        double avgMoAccesses = 0.0;
-        int total = 0;
-        System.out.println("Mo: Mo Accesses");
-        for (int month = 1; month < monthCounts.length; month++) 
-        {
-            System.out.println(month + ":     " + monthCounts[month]);
-            total+= monthCounts[month];
-        }
-        avgMoAccesses = (total/12.0);
-        System.out.print("Average accesses per month ");
-        System.out.printf("%.2f", avgMoAccesses); 
-        return avgMoAccesses;
+        return totalAccessesPerMonth() / 12.0;
     } 
     
+    /**
+     * Return a copy of the hourly counts.
+     * @return The number of accesses in each hour (index 0-23).
+     */
+    public int[] getHourCounts()
+    {
+        return hourCounts.clone();
+    }
+
+    /**
+     * Return a copy of the daily counts.
+     * @return The number of accesses on each day of the month (index 1-31).
+     */
+    public int[] getDayCounts()
+    {
+        return dayCounts.clone();
+    }
+
+    /**
+     * Return a copy of the monthly counts.
+     * @return The number of accesses in each month (index 1-12).
+     */
+    public int[] getMonthCounts()
+    {
+        return monthCounts.clone();
+    }
+
+    /**
+     * Return the time of every access in the log file, in order.
+     * This goes back over the data held by the reader, so call it
+     * after analyzeData; the reader is left at the end of the data.
+     * @return The minute of each access (minutes since 1st January 1970).
+     */
+    public long[] getAccessTimes()
+    {
+        long[] times = new long[64];
+        int count = 0;
+        LogfileReader reader = getReader();
+        reader.reset();
+        while(reader.hasNext())
+        {
+            if (count == times.length)
+            {
+                times = Arrays.copyOf(times, count * 2);
+            }
+            times[count++] = reader.next().getEpochMinute();
+        }
+        return Arrays.copyOf(times, count);
+    }
+
+    /**
+     * Collect all of the analysis results into a report.
+     * These should have been set with a prior
+     * call to analyzeData.
+     * @return A report that can be rendered or shared between threads.
+     */
+    public AnalysisReport createReport()
+    {
+        return new AnalysisReport(filename, this);
+    }
+
+    /**
+     * Print all of the analysis results in one go.
+     * @param format The layout to print: JSON, CSV or TEXT.
+     */
+    public void printReport(ReportFormat format)
+    {
+        new ReportRenderer().print(createReport(), format);
+    }
+
     /**
      * Print the hourly counts.
      * These should have been set with a prior
@@ -295,10 +418,13 @@ public class LogAnalyzer
      */
     public void printHourlyCounts()
     {
-        System.out.println("Hr: Count");
+        // Build the table first so that it is printed in one call.
+        StringBuilder table = new StringBuilder(16 + hourCounts.length * 12);
+        table.append("Hr: Count\n");
         for(int hour = 0; hour < hourCounts.length; hour++) {
-            System.out.println(hour + ": " + hourCounts[hour]);
+            table.append(hour).append(": ").append(hourCounts[hour]).append('\n');
         }
+        System.out.print(table);
     }
 
     /**
@@ -306,6 +432,19 @@ public class LogAnalyzer
      */
     public void printData()
     {
-        reader.printData();
+        getReader().printData();
+    }
+
+    /**
+     * Return the reader, creating it the first time it is needed.
+     * @return The LogfileReader for the log file.
+     */
+    private LogfileReader getReader()
+    {
+        if (reader == null)
+        {
+            reader = new LogfileReader(filename);
+        }
+        return reader;
     }
 }
@@ -109,6 +109,70 @@ public class LogEntry implements Comparable<LogEntry>
         return dataValues[MINUTE];
     }
     
+    /**
+     * Return the number of days between 1st January 1970 and the
+     * date of this entry. This is plain integer arithmetic, so it is
+     * cheap enough to call for every line of a large log.
+     * @return The day number of this entry (0 is 1st January 1970).
+     */
+    public int getEpochDay()
+    {
+        return epochDay(dataValues[YEAR], dataValues[MONTH], dataValues[DAY]);
+    }
+
+    /**
+     * Return the number of minutes between midnight on 1st January 1970
+     * and the time of this entry.
+     * @return The minute number of this entry.
+     */
+    public long getEpochMinute()
+    {
+        return getEpochDay() * 1440L + dataValues[HOUR] * 60 + dataValues[MINUTE];
+    }
+
+    /**
+     * Convert a calendar date to a day number.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @return The number of days since 1st January 1970.
+     */
+    public static int epochDay(int year, int month, int day)
+    {
+        // Count years from March so that the leap day is the last day.
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        // 719468 is the number of days from 0000-03-01 to 1970-01-01.
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Create a LogEntry for a given minute number.
+     * This is the reverse of getEpochMinute().
+     * @param epochMinute The number of minutes since 1st January 1970.
+     * @return A LogEntry for that minute.
+     */
+    public static LogEntry fromEpochMinute(long epochMinute)
+    {
+        int days = (int) Math.floorDiv(epochMinute, 1440L);
+        int minuteOfDay = (int) Math.floorMod(epochMinute, 1440L);
+        // Shift so that eras start on 0000-03-01.
+        int z = days + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                         - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new LogEntry(year, month, day, minuteOfDay / 60, minuteOfDay % 60);
+    }
+
     /**
      * Create a string representation of the data.
      * This is not necessarily identical with the
@@ -0,0 +1,684 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * Read and count a log file in the simple format
+ *
+ *    year month day hour minute
+ *
+ * in one pass, with reading, parsing and counting overlapped:
+ *
+ *  - a reader thread fills blocks of bytes from the file, always
+ *    ending a block at the end of a line;
+ *  - parser threads turn each block into a batch of packed times;
+ *  - the calling thread adds each batch to the hour, day and month counts,
+ *    and to a count for each minute in which there were accesses.
+ *
+ * runFrom() starts part way through the file and leaves any unfinished
+ * last line, so that a log that is still being written can be followed
+ * by reading only what has been added since the last run.
+ *
+ * The stages are joined by BoundedQueues. A fixed set of blocks and
+ * batches is handed round and reused, so when one stage falls behind
+ * the stage before it runs out of buffers and waits.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class LogIngestPipeline
+{
+    // The size of each block read from the file.
+    private static final int BLOCK_SIZE = 256 * 1024;
+    // The most times held in one batch.
+    private static final int BATCH_SIZE = 16 * 1024;
+    // The number of blocks and batches in use for each parser.
+    private static final int BUFFERS_PER_PARSER = 2;
+
+    // The file of log data.
+    private final String filename;
+    // The number of parser threads.
+    private final int parsers;
+    // The results.
+    private int[] hourCounts;
+    private int[] dayCounts;
+    private int[] monthCounts;
+    private long lines;
+    private long badLines;
+    // Each minute with accesses (minutes since 1970, ascending) and its count.
+    private long[] minutes;
+    private long[] minuteCounts;
+    // Where in the file reading stopped: just after the last line read.
+    private long endOffset;
+    // Set by the reader or a parser thread if it failed, so that
+    // partial counts are not reported as a good result. Once it is
+    // set, the other stages stop instead of waiting for more work.
+    private volatile Throwable failure;
+
+    /**
+     * Create a pipeline with one parser for each processor
+     * not used by the reader.
+     * @param filename The file of log data.
+     */
+    public LogIngestPipeline(String filename)
+    {
+        this(filename, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Create a pipeline with a chosen number of parsers.
+     * @param filename The file of log data.
+     * @param parsers The number of parser threads (at least 1).
+     */
+    public LogIngestPipeline(String filename, int parsers)
+    {
+        if(parsers < 1) {
+            throw new IllegalArgumentException("Need at least one parser: " + parsers);
+        }
+        this.filename = filename;
+        this.parsers = parsers;
+        hourCounts = new int[24];
+        dayCounts = new int[32];
+        monthCounts = new int[13];
+        minutes = new long[0];
+        minuteCounts = new long[0];
+    }
+
+    /**
+     * Read the whole file and count its accesses.
+     * The file is found in the same way as by LogfileReader.
+     * @return true if the file was read, false otherwise.
+     */
+    public boolean run()
+    {
+        try {
+            ingest(0, false);
+            return true;
+        }
+        catch(FileNotFoundException e) {
+            System.out.println("Failed to find the data file: " + filename);
+            return false;
+        }
+        catch(IOException e) {
+            System.out.println("Problem encountered: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Read and count the complete lines from part way through the
+     * file to its end. A last line without a newline may still be
+     * being written, so it is left for a later run.
+     * @param offset Where to start, e.g. getEndOffset() of an earlier run.
+     * @throws IOException If the file cannot be found or read.
+     */
+    public void runFrom(long offset) throws IOException
+    {
+        ingest(offset, true);
+    }
+
+    /**
+     * @return A copy of the hourly access counts (index 0-23).
+     */
+    public int[] getHourCounts()
+    {
+        return hourCounts.clone();
+    }
+
+    /**
+     * @return A copy of the daily access counts (index 1-31).
+     */
+    public int[] getDayCounts()
+    {
+        return dayCounts.clone();
+    }
+
+    /**
+     * @return A copy of the monthly access counts (index 1-12).
+     */
+    public int[] getMonthCounts()
+    {
+        return monthCounts.clone();
+    }
+
+    /**
+     * @return The number of accesses counted.
+     */
+    public long getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * @return The number of non-empty lines that could not be read.
+     */
+    public long getBadLines()
+    {
+        return badLines;
+    }
+
+    /**
+     * @return A copy of the minutes with accesses, in minutes since 1970, ascending.
+     */
+    public long[] getMinutes()
+    {
+        return minutes.clone();
+    }
+
+    /**
+     * @return A copy of the number of accesses in each of getMinutes().
+     */
+    public long[] getMinuteCounts()
+    {
+        return minuteCounts.clone();
+    }
+
+    /**
+     * @return The position in the file just after the last line read.
+     */
+    public long getEndOffset()
+    {
+        return endOffset;
+    }
+
+    /**
+     * Run the stages over the file.
+     * @param offset Where in the file to start.
+     * @param wholeLinesOnly true to leave a last line that has no newline.
+     * @throws IOException If the file cannot be found or read, or a stage failed.
+     */
+    private void ingest(long offset, boolean wholeLinesOnly) throws IOException
+    {
+        FileInputStream in;
+        try {
+            // Locate the file with respect to the current environment.
+            URL fileURL = getClass().getClassLoader().getResource(filename);
+            if(fileURL == null) {
+                throw new FileNotFoundException(filename);
+            }
+            in = new FileInputStream(new File(fileURL.toURI()));
+        }
+        catch(URISyntaxException | IllegalArgumentException e) {
+            throw new FileNotFoundException(filename + " (" + e.getMessage() + ")");
+        }
+        try {
+            in.getChannel().position(offset);
+        }
+        catch(IOException e) {
+            in.close();
+            throw e;
+        }
+
+        int buffers = parsers * BUFFERS_PER_PARSER;
+        // Every block and batch, and every end marker, fits in each queue,
+        // so only the free lists ever make a stage wait.
+        BoundedQueue<Block> freeBlocks = new BoundedQueue<>(buffers + parsers);
+        BoundedQueue<Block> fullBlocks = new BoundedQueue<>(buffers + parsers);
+        BoundedQueue<Batch> freeBatches = new BoundedQueue<>(buffers + parsers);
+        BoundedQueue<Batch> fullBatches = new BoundedQueue<>(buffers + parsers);
+        for(int i = 0; i < buffers; i++) {
+            freeBlocks.put(new Block(BLOCK_SIZE));
+            freeBatches.put(new Batch(BATCH_SIZE));
+        }
+
+        Thread reader = new Thread(() -> read(in, offset, wholeLinesOnly,
+                                              freeBlocks, fullBlocks),
+                                   "log-reader");
+        reader.setDaemon(true);
+        reader.start();
+        for(int i = 0; i < parsers; i++) {
+            Thread parser = new Thread(() -> parse(fullBlocks, freeBlocks,
+                                                   freeBatches, fullBatches),
+                                       "log-parser-" + i);
+            parser.setDaemon(true);
+            parser.start();
+        }
+        aggregate(fullBatches, freeBatches);
+
+        if(failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if(failure != null) {
+            // Such as running out of memory; report it as a failed read.
+            throw new IOException("Could not read " + filename + ": " + failure, failure);
+        }
+    }
+
+    /**
+     * The reader stage. Fill free blocks from the file and pass
+     * them on, ending each block after its last complete line.
+     * The part line left over starts the next block.
+     * @param in The file to read.
+     * @param offset Where in the file reading starts.
+     * @param wholeLinesOnly true to leave a last line that has no newline.
+     * @param freeBlocks Where to get empty blocks.
+     * @param fullBlocks Where to put filled blocks.
+     */
+    private void read(InputStream in, long offset, boolean wholeLinesOnly,
+                      BoundedQueue<Block> freeBlocks, BoundedQueue<Block> fullBlocks)
+    {
+        byte[] carry = new byte[BLOCK_SIZE];
+        int carryLength = 0;
+        long position = offset;
+        try(InputStream file = in) {
+            boolean endOfFile = false;
+            while(!endOfFile && failure == null) {
+                Block block = freeBlocks.take(this::failed);
+                if(block == null) {
+                    break;
+                }
+                // A long line may have left more than this block holds.
+                if(block.data.length <= carryLength) {
+                    block.data = new byte[Math.max(block.data.length, carryLength) * 2];
+                }
+                System.arraycopy(carry, 0, block.data, 0, carryLength);
+                int filled = carryLength;
+                int lastNewline = -1;
+                // Read until the block is full, growing it if one line fills it.
+                while(true) {
+                    int read = file.read(block.data, filled, block.data.length - filled);
+                    if(read < 0) {
+                        endOfFile = true;
+                        break;
+                    }
+                    filled += read;
+                    if(filled == block.data.length) {
+                        lastNewline = lastIndexOf(block.data, (byte) '\n', filled);
+                        if(lastNewline >= 0) {
+                            break;
+                        }
+                        block.data = Arrays.copyOf(block.data, block.data.length * 2);
+                    }
+                }
+                if(endOfFile) {
+                    // Whatever is left is the last line, with or without a newline.
+                    carryLength = 0;
+                    block.length = wholeLinesOnly
+                        ? lastIndexOf(block.data, (byte) '\n', filled) + 1 : filled;
+                }
+                else {
+                    carryLength = filled - (lastNewline + 1);
+                    if(carry.length < carryLength) {
+                        carry = new byte[block.data.length];
+                    }
+                    System.arraycopy(block.data, lastNewline + 1, carry, 0, carryLength);
+                    block.length = lastNewline + 1;
+                }
+                position += block.length;
+                if(block.length > 0) {
+                    fullBlocks.put(block);
+                }
+                else {
+                    freeBlocks.put(block);
+                }
+            }
+        }
+        catch(Throwable e) {
+            failure = e;
+        }
+        finally {
+            // The end markers pass this on to the thread that runs the pipeline.
+            endOffset = position;
+            // Tell each parser that there is nothing more to come.
+            for(int i = 0; i < parsers; i++) {
+                fullBlocks.put(Block.END);
+            }
+        }
+    }
+
+    /**
+     * The parser stage. Turn the lines in each block into packed
+     * times, filling batches and passing them on when full.
+     * @param fullBlocks Where to get blocks to parse.
+     * @param freeBlocks Where to return parsed blocks.
+     * @param freeBatches Where to get empty batches.
+     * @param fullBatches Where to put filled batches.
+     */
+    private void parse(BoundedQueue<Block> fullBlocks, BoundedQueue<Block> freeBlocks,
+                       BoundedQueue<Batch> freeBatches, BoundedQueue<Batch> fullBatches)
+    {
+        int[] fields = new int[5];
+        Batch batch = null;
+        Block block = null;
+        try {
+            while((block = fullBlocks.take()) != Block.END) {
+                if(failure != null) {
+                    break;
+                }
+                byte[] data = block.data;
+                int lineStart = 0;
+                while(lineStart < block.length) {
+                    int lineEnd = lineStart;
+                    while(lineEnd < block.length && data[lineEnd] != '\n') {
+                        lineEnd++;
+                    }
+                    if(batch == null) {
+                        batch = freeBatches.take(this::failed);
+                        if(batch == null) {
+                            return;
+                        }
+                    }
+                    if(parseLine(data, lineStart, lineEnd, fields)) {
+                        batch.times[batch.size++] = pack(fields);
+                        if(batch.size == batch.times.length) {
+                            fullBatches.put(batch);
+                            batch = null;
+                        }
+                    }
+                    else if(!isBlank(data, lineStart, lineEnd)) {
+                        batch.badLines++;
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                freeBlocks.put(block);
+                block = null;
+            }
+        }
+        catch(Throwable e) {
+            failure = e;
+        }
+        finally {
+            // Hand back the block being parsed, so the reader is not left short.
+            if(block != null && block != Block.END) {
+                freeBlocks.put(block);
+            }
+            if(batch != null) {
+                fullBatches.put(batch);
+            }
+            fullBatches.put(Batch.END);
+        }
+    }
+
+    /**
+     * The aggregator stage. Add each batch to the counts and
+     * hand it back, until every parser has finished.
+     * @param fullBatches Where to get filled batches.
+     * @param freeBatches Where to return counted batches.
+     */
+    private void aggregate(BoundedQueue<Batch> fullBatches, BoundedQueue<Batch> freeBatches)
+    {
+        MinuteTally tally = new MinuteTally();
+        // Lines usually come in time order, so count runs of the same
+        // time and only look the minute up when the time changes.
+        long runTime = -1;
+        long runLength = 0;
+        int finished = 0;
+        while(finished < parsers) {
+            Batch batch = fullBatches.take();
+            if(batch == Batch.END) {
+                finished++;
+                continue;
+            }
+            for(int i = 0; i < batch.size; i++) {
+                long time = batch.times[i];
+                hourCounts[(int) (time >>> 6) & 31]++;
+                dayCounts[(int) (time >>> 11) & 31]++;
+                monthCounts[(int) (time >>> 16) & 15]++;
+                if(time == runTime) {
+                    runLength++;
+                }
+                else {
+                    if(runLength > 0) {
+                        tally.add(epochMinute(runTime), runLength);
+                    }
+                    runTime = time;
+                    runLength = 1;
+                }
+            }
+            lines += batch.size;
+            badLines += batch.badLines;
+            batch.size = 0;
+            batch.badLines = 0;
+            freeBatches.put(batch);
+        }
+        if(runLength > 0) {
+            tally.add(epochMinute(runTime), runLength);
+        }
+        minutes = tally.sortedMinutes();
+        minuteCounts = new long[minutes.length];
+        for(int i = 0; i < minutes.length; i++) {
+            minuteCounts[i] = tally.get(minutes[i]);
+        }
+    }
+
+    /**
+     * Read the five integers from a line. AnalysisSnapshot also
+     * uses this, so that both skip bad lines in the same way.
+     * @param data The bytes holding the line.
+     * @param start The start of the line.
+     * @param end The end of the line (not including the newline).
+     * @param fields Where to store year, month, day, hour and minute.
+     * @return true if the line held five values in range.
+     */
+    static boolean parseLine(byte[] data, int start, int end, int[] fields)
+    {
+        int pos = start;
+        for(int field = 0; field < fields.length; field++) {
+            while(pos < end && (data[pos] == ' ' || data[pos] == '\t' || data[pos] == '\r')) {
+                pos++;
+            }
+            int value = 0;
+            int digits = 0;
+            while(pos < end && data[pos] >= '0' && data[pos] <= '9') {
+                // More digits than an int can safely hold.
+                if(digits == 9) {
+                    return false;
+                }
+                value = value * 10 + (data[pos] - '0');
+                digits++;
+                pos++;
+            }
+            // Each value must end at white space or the end of the line.
+            if(digits == 0
+               || (pos < end && data[pos] != ' ' && data[pos] != '\t' && data[pos] != '\r')) {
+                return false;
+            }
+            fields[field] = value;
+        }
+        return fields[1] >= 1 && fields[1] <= 12 && fields[2] >= 1 && fields[2] <= 31
+               && fields[3] <= 23 && fields[4] <= 59;
+    }
+
+    /**
+     * Pack year, month, day, hour and minute into one long:
+     * minute in bits 0-5, hour 6-10, day 11-15, month 16-19
+     * and the year above that.
+     * @param fields The values to pack.
+     * @return The packed time.
+     */
+    private static long pack(int[] fields)
+    {
+        return ((long) fields[0] << 20) | (fields[1] << 16) | (fields[2] << 11)
+               | (fields[3] << 6) | fields[4];
+    }
+
+    /**
+     * Has a stage failed?
+     * @return true if the pipeline should stop.
+     */
+    private boolean failed()
+    {
+        return failure != null;
+    }
+
+    /**
+     * Convert a packed time to a minute number.
+     * @param time The packed time.
+     * @return The number of minutes since 1st January 1970.
+     */
+    private static long epochMinute(long time)
+    {
+        int year = (int) (time >>> 20);
+        int month = (int) (time >>> 16) & 15;
+        int day = (int) (time >>> 11) & 31;
+        return LogEntry.epochDay(year, month, day) * 1440L
+               + ((int) (time >>> 6) & 31) * 60 + ((int) time & 63);
+    }
+
+    /**
+     * Is part of a line only white space?
+     * @param data The bytes holding the line.
+     * @param start The start of the line.
+     * @param end The end of the line.
+     * @return true if there is nothing but white space.
+     */
+    static boolean isBlank(byte[] data, int start, int end)
+    {
+        for(int i = start; i < end; i++) {
+            if(data[i] != ' ' && data[i] != '\t' && data[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the last occurrence of a byte.
+     * @param data The bytes to search.
+     * @param b The byte to find.
+     * @param end Where to stop (exclusive).
+     * @return The index of the byte, or -1 if it is not there.
+     */
+    private static int lastIndexOf(byte[] data, byte b, int end)
+    {
+        for(int i = end - 1; i >= 0; i--) {
+            if(data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A block of bytes read from the file, ending at a line end.
+     */
+    private static class Block
+    {
+        // Passed to a parser to tell it the file has been read.
+        static final Block END = new Block(0);
+
+        // The bytes, and how many of them hold data.
+        byte[] data;
+        int length;
+
+        Block(int size)
+        {
+            data = new byte[size];
+        }
+    }
+
+    /**
+     * Access counts keyed by minute, in an open-addressing hash table,
+     * so that memory grows with the number of different minutes
+     * rather than with the number of lines.
+     */
+    private static class MinuteTally
+    {
+        // The minutes and their counts; a count of 0 marks an empty entry.
+        long[] keys = new long[1024];
+        long[] counts = new long[1024];
+        int size;
+
+        /**
+         * Add to the count for a minute.
+         * @param minute The minute.
+         * @param count How many accesses to add (at least 1).
+         */
+        void add(long minute, long count)
+        {
+            int i = find(keys, counts, minute);
+            if(counts[i] == 0) {
+                keys[i] = minute;
+                size++;
+            }
+            counts[i] += count;
+            if(size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        /**
+         * @param minute The minute.
+         * @return The count for the minute, or 0 if it has none.
+         */
+        long get(long minute)
+        {
+            return counts[find(keys, counts, minute)];
+        }
+
+        /**
+         * @return The minutes with counts, in ascending order.
+         */
+        long[] sortedMinutes()
+        {
+            long[] sorted = new long[size];
+            int n = 0;
+            for(int i = 0; i < keys.length; i++) {
+                if(counts[i] != 0) {
+                    sorted[n++] = keys[i];
+                }
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        /**
+         * Double the size of the table.
+         */
+        void grow()
+        {
+            long[] newKeys = new long[keys.length * 2];
+            long[] newCounts = new long[counts.length * 2];
+            for(int i = 0; i < keys.length; i++) {
+                if(counts[i] != 0) {
+                    int j = find(newKeys, newCounts, keys[i]);
+                    newKeys[j] = keys[i];
+                    newCounts[j] = counts[i];
+                }
+            }
+            keys = newKeys;
+            counts = newCounts;
+        }
+
+        /**
+         * Find the entry for a minute, or the empty entry where it belongs.
+         * @param keys The minutes in the table.
+         * @param counts The counts in the table.
+         * @param minute The minute to find.
+         * @return The index of the entry.
+         */
+        static int find(long[] keys, long[] counts, long minute)
+        {
+            int mask = keys.length - 1;
+            int i = (int) SliceHash.mix(minute) & mask;
+            while(counts[i] != 0 && keys[i] != minute) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * A batch of packed times produced by a parser.
+     */
+    private static class Batch
+    {
+        // Passed to the aggregator when a parser has finished.
+        static final Batch END = new Batch(0);
+
+        // The times, how many there are, and lines that could not be read.
+        long[] times;
+        int size;
+        int badLines;
+
+        Batch(int size)
+        {
+            times = new long[size];
+        }
+    }
+}
@@ -0,0 +1,314 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serve the analysis of a log file over HTTP, so that it only has
+ * to be read once however many questions are asked of it.
+ *
+ * Queries are answered from an AnalysisSnapshot. When the log is
+ * reloaded a new snapshot is built and swapped in as a whole, so a
+ * query never sees a half-finished analysis and never waits for a lock.
+ * The service will not start without its log file, and a reload that
+ * fails keeps the results already being served. A reload reads only
+ * the lines added to the log since the last one.
+ *
+ * The service has no access control, so by default it only answers
+ * requests from the same machine.
+ *
+ * The endpoints, all answering GET with JSON, are:
+ *
+ *    /report                  every result and count
+ *    /busiestHour /busiestDay /busiestMonth
+ *    /histogram/hour /histogram/day /histogram/month
+ *    /count?from=...&to=...   accesses in a time range; times are
+ *                             yyyy-mm-dd or yyyy-mm-ddThh:mm, from is
+ *                             included, to is not, and either may be left out
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class LogQueryService
+{
+    // The file of log data.
+    private final String filename;
+    // The analysis currently being served.
+    private final AtomicReference<AnalysisSnapshot> snapshot;
+    // The web server, and the threads handling its requests.
+    private HttpServer server;
+    private ExecutorService executor;
+    // Checks the log file for changes when following it.
+    private ScheduledExecutorService follower;
+
+    /**
+     * Create a service and load the log file.
+     * @param filename The file of log data.
+     * @throws IOException If the file cannot be found or read.
+     */
+    public LogQueryService(String filename) throws IOException
+    {
+        this.filename = filename;
+        snapshot = new AtomicReference<>();
+        refresh();
+    }
+
+    /**
+     * Read the lines added to the log file since it was last read, and
+     * start serving the new results. Queries already running finish with
+     * the old results. Only one refresh runs at a time, so an older load
+     * can never replace a newer one. If the file cannot be read, the old
+     * results are kept.
+     * @throws IOException If the file cannot be found or read.
+     */
+    public synchronized void refresh() throws IOException
+    {
+        snapshot.set(new AnalysisSnapshot(filename, snapshot.get()));
+    }
+
+    /**
+     * Return the results currently being served.
+     * @return The current snapshot.
+     */
+    public AnalysisSnapshot getSnapshot()
+    {
+        return snapshot.get();
+    }
+
+    /**
+     * Start answering queries from this machine only.
+     * @param port The port to listen on, e.g. 8080.
+     * @throws IOException If the port cannot be opened.
+     */
+    public void start(int port) throws IOException
+    {
+        start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Start answering queries on a chosen network address. Anyone who
+     * can reach that address can query the log.
+     * @param address The address to listen on.
+     * @param port The port to listen on, e.g. 8080.
+     * @throws IOException If the port cannot be opened.
+     */
+    public void start(InetAddress address, int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/", this::handle);
+        executor = createExecutor();
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("Serving " + filename + " on "
+                           + server.getAddress().getAddress().getHostAddress()
+                           + " port " + server.getAddress().getPort());
+    }
+
+    /**
+     * Return the port the service is listening on.
+     * @return The port number, or -1 if it has not been started.
+     */
+    public int getPort()
+    {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Reload the log file whenever it changes.
+     * @param seconds How often to check the file.
+     */
+    public void follow(int seconds)
+    {
+        if(follower == null) {
+            follower = Executors.newSingleThreadScheduledExecutor();
+            follower.scheduleWithFixedDelay(() -> {
+                // Anything thrown would cancel the checks, so report it and carry on.
+                try {
+                    File file = AnalysisSnapshot.locate(filename);
+                    AnalysisSnapshot current = snapshot.get();
+                    if(file.length() != current.getFileLength()
+                       || file.lastModified() != current.getFileModified()) {
+                        refresh();
+                    }
+                }
+                catch(Throwable e) {
+                    System.out.println("Problem refreshing " + filename + ": " + e);
+                }
+            }, seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop answering queries and stop following the log file.
+     */
+    public void stop()
+    {
+        if(follower != null) {
+            follower.shutdownNow();
+            follower = null;
+        }
+        if(server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * Run the service from the command line.
+     * @param args The log file name (default weblog.txt) and port (default 8080).
+     * @throws IOException If the log file cannot be read or the port cannot be opened.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String filename = args.length > 0 ? args[0] : "weblog.txt";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        LogQueryService service = new LogQueryService(filename);
+        service.follow(5);
+        service.start(port);
+    }
+
+    /**
+     * Answer one request.
+     * @param exchange The request and its response.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            if(!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Only GET is supported"));
+                return;
+            }
+            AnalysisSnapshot current = snapshot.get();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = current.getResponse(path);
+            if(body != null) {
+                send(exchange, 200, body);
+            }
+            else if(path.equals("/count")) {
+                send(exchange, 200, count(current, exchange.getRequestURI().getRawQuery()));
+            }
+            else {
+                send(exchange, 404, error("Unknown query: " + path));
+            }
+        }
+        catch(IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answer a /count query.
+     * @param current The snapshot to answer from.
+     * @param query The query string, e.g. from=2016-01-01&to=2016-02-01.
+     * @return The JSON response.
+     */
+    private byte[] count(AnalysisSnapshot current, String query)
+    {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if(query != null) {
+            for(String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : parameter.substring(equals + 1);
+                if(name.equals("from")) {
+                    from = parseMinute(value);
+                }
+                else if(name.equals("to")) {
+                    to = parseMinute(value);
+                }
+            }
+        }
+        return ("{\"count\":" + current.countBetween(from, to) + "}\n")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convert yyyy-mm-dd or yyyy-mm-ddThh:mm to a minute number.
+     * @param text The time to convert.
+     * @return The number of minutes since 1st January 1970.
+     * @throws IllegalArgumentException If the time is not in either format.
+     */
+    private static long parseMinute(String text)
+    {
+        try {
+            String[] parts = text.split("[-T:]|%3A|%3a");
+            if(parts.length != 3 && parts.length != 5) {
+                throw new IllegalArgumentException("Bad time: " + text);
+            }
+            int year = Integer.parseInt(parts[0]);
+            int month = Integer.parseInt(parts[1]);
+            int day = Integer.parseInt(parts[2]);
+            int hour = parts.length == 5 ? Integer.parseInt(parts[3]) : 0;
+            int minute = parts.length == 5 ? Integer.parseInt(parts[4]) : 0;
+            if(month < 1 || month > 12 || day < 1 || day > 31
+               || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                throw new IllegalArgumentException("Bad time: " + text);
+            }
+            return LogEntry.epochDay(year, month, day) * 1440L + hour * 60 + minute;
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Bad time: " + text);
+        }
+    }
+
+    /**
+     * Send a response.
+     * @param exchange The request to respond to.
+     * @param status The HTTP status code.
+     * @param body The JSON to send.
+     * @throws IOException If the response cannot be sent.
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body)
+        throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Make a JSON error response.
+     * @param message What went wrong.
+     * @return The JSON to send.
+     */
+    private static byte[] error(String message)
+    {
+        String quoted = message.replace("\\", "\\\\").replace("\"", "\\\"");
+        return ("{\"error\":\"" + quoted + "\"}\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create the threads that handle requests. On Java 21 and later
+     * each request gets its own virtual thread; on older versions a
+     * fixed pool of ordinary threads is shared.
+     * @return The executor for the web server.
+     */
+    private static ExecutorService createExecutor()
+    {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * The layouts a ReportRenderer can produce.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public enum ReportFormat
+{
+    // A single JSON object.
+    JSON,
+    // Comma separated rows of metric,key,value.
+    CSV,
+    // Columns of text for reading in a terminal.
+    TEXT
+}
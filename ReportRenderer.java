@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Render an AnalysisReport as JSON, CSV or a text table.
+ *
+ * The whole report is written in one pass into a single byte buffer,
+ * sized in advance from the number of rows, and then written out
+ * with one channel write. The buffer is reused for the next report,
+ * so a renderer should not be shared between threads; give each
+ * thread its own.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class ReportRenderer
+{
+    // Room allowed for each row of counts and for the summary lines.
+    private static final int BYTES_PER_ROW = 32;
+    private static final int SUMMARY_BYTES = 640;
+
+    // Where the report is built, and how much of it is used.
+    private byte[] buffer;
+    private int length;
+
+    /**
+     * Create a renderer.
+     */
+    public ReportRenderer()
+    {
+        buffer = new byte[0];
+    }
+
+    /**
+     * Render a report. The result is only valid until this
+     * renderer is used again.
+     * @param report The report to render.
+     * @param format The layout to use.
+     * @return A buffer holding the rendered report.
+     */
+    public ByteBuffer render(AnalysisReport report, ReportFormat format)
+    {
+        int rows = 24 + report.getDayCountLength() + report.getMonthCountLength();
+        // A name character takes at most 6 bytes (as a JSON escape).
+        int needed = SUMMARY_BYTES + 6 * report.getName().length() + rows * BYTES_PER_ROW;
+        if(buffer.length < needed) {
+            buffer = new byte[needed];
+        }
+        length = 0;
+        switch(format) {
+            case JSON:
+                renderJson(report);
+                break;
+            case CSV:
+                renderCsv(report);
+                break;
+            default:
+                renderText(report);
+                break;
+        }
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    /**
+     * Render a report and write it to a channel.
+     * @param report The report to render.
+     * @param format The layout to use.
+     * @param channel Where to write the report.
+     * @throws IOException If the channel cannot be written.
+     */
+    public void write(AnalysisReport report, ReportFormat format,
+                      WritableByteChannel channel) throws IOException
+    {
+        ByteBuffer rendered = render(report, format);
+        // A blocking channel writes everything at once; others may need more calls.
+        while(rendered.hasRemaining()) {
+            channel.write(rendered);
+        }
+    }
+
+    /**
+     * Render a report and print it on the terminal.
+     * @param report The report to render.
+     * @param format The layout to use.
+     */
+    public void print(AnalysisReport report, ReportFormat format)
+    {
+        try {
+            write(report, format, Channels.newChannel(System.out));
+        }
+        catch(IOException e) {
+            System.err.println("There was a problem printing the report: " + e);
+        }
+    }
+
+    /**
+     * Render a report as a JSON object.
+     * @param report The report to render.
+     */
+    private void renderJson(AnalysisReport report)
+    {
+        append("{\"name\":");
+        appendJsonString(report.getName());
+        append(",\"numberOfAccesses\":").append(report.getNumberOfAccesses());
+        append(",\"busiestHour\":").append(report.getBusiestHour());
+        append(",\"quietestHour\":").append(report.getQuietestHour());
+        append(",\"busiestTwoHour\":").append(report.getBusiestTwoHour());
+        append(",\"busiestDay\":").append(report.getBusiestDay());
+        append(",\"quietestDay\":").append(report.getQuietestDay());
+        append(",\"busiestMonth\":").append(report.getBusiestMonth());
+        append(",\"quietestMonth\":").append(report.getQuietestMonth());
+        append(",\"totalAccessesPerMonth\":").append(report.getTotalAccessesPerMonth());
+        append(",\"averageAccessesPerMonth\":").append(report.getAverageAccessesPerMonth());
+        append(",\"hourly\":[");
+        for(int hour = 0; hour < 24; hour++) {
+            if(hour > 0) {
+                append(',');
+            }
+            append(report.getHourCount(hour));
+        }
+        // Days and months are 1-based, so index 0 is left out.
+        append("],\"daily\":[");
+        for(int day = 1; day < report.getDayCountLength(); day++) {
+            if(day > 1) {
+                append(',');
+            }
+            append(report.getDayCount(day));
+        }
+        append("],\"monthly\":[");
+        for(int month = 1; month < report.getMonthCountLength(); month++) {
+            if(month > 1) {
+                append(',');
+            }
+            append(report.getMonthCount(month));
+        }
+        append("]}\n");
+    }
+
+    /**
+     * Render a report as rows of metric,key,value.
+     * @param report The report to render.
+     */
+    private void renderCsv(AnalysisReport report)
+    {
+        append("metric,key,value\n");
+        for(int hour = 0; hour < 24; hour++) {
+            append("hour,").append(hour).append(',')
+                .append(report.getHourCount(hour)).append('\n');
+        }
+        for(int day = 1; day < report.getDayCountLength(); day++) {
+            append("day,").append(day).append(',')
+                .append(report.getDayCount(day)).append('\n');
+        }
+        for(int month = 1; month < report.getMonthCountLength(); month++) {
+            append("month,").append(month).append(',')
+                .append(report.getMonthCount(month)).append('\n');
+        }
+        append("numberOfAccesses,,").append(report.getNumberOfAccesses()).append('\n');
+        append("busiestHour,,").append(report.getBusiestHour()).append('\n');
+        append("quietestHour,,").append(report.getQuietestHour()).append('\n');
+        append("busiestTwoHour,,").append(report.getBusiestTwoHour()).append('\n');
+        append("busiestDay,,").append(report.getBusiestDay()).append('\n');
+        append("quietestDay,,").append(report.getQuietestDay()).append('\n');
+        append("busiestMonth,,").append(report.getBusiestMonth()).append('\n');
+        append("quietestMonth,,").append(report.getQuietestMonth()).append('\n');
+        append("totalAccessesPerMonth,,").append(report.getTotalAccessesPerMonth()).append('\n');
+        append("averageAccessesPerMonth,,").append(report.getAverageAccessesPerMonth())
+            .append('\n');
+    }
+
+    /**
+     * Render a report as columns of text, in the same style
+     * as LogAnalyzer's print methods.
+     * @param report The report to render.
+     */
+    private void renderText(AnalysisReport report)
+    {
+        append("Report for ").appendUtf8(report.getName()).append('\n');
+        append("Hr: Count\n");
+        for(int hour = 0; hour < 24; hour++) {
+            append(hour).append(": ").append(report.getHourCount(hour)).append('\n');
+        }
+        append("Day: Count\n");
+        for(int day = 1; day < report.getDayCountLength(); day++) {
+            append(day).append(": ").append(report.getDayCount(day)).append('\n');
+        }
+        append("Mo: Count\n");
+        for(int month = 1; month < report.getMonthCountLength(); month++) {
+            append(month).append(": ").append(report.getMonthCount(month)).append('\n');
+        }
+        append("Number of accesses: ").append(report.getNumberOfAccesses()).append('\n');
+        append("Busiest hour: ").append(report.getBusiestHour()).append('\n');
+        append("Quietest hour: ").append(report.getQuietestHour()).append('\n');
+        append("Busiest two hours start at: ").append(report.getBusiestTwoHour()).append('\n');
+        append("Busiest day: ").append(report.getBusiestDay()).append('\n');
+        append("Quietest day: ").append(report.getQuietestDay()).append('\n');
+        append("Busiest month: ").append(report.getBusiestMonth()).append('\n');
+        append("Quietest month: ").append(report.getQuietestMonth()).append('\n');
+        append("Grand total of monthly accesses is: ")
+            .append(report.getTotalAccessesPerMonth()).append('\n');
+        append("Average accesses per month ")
+            .append(report.getAverageAccessesPerMonth()).append('\n');
+    }
+
+    /**
+     * Add any text to the buffer, encoded as UTF-8.
+     * @param text The text to add.
+     * @return This renderer, so that calls can be chained.
+     */
+    private ReportRenderer appendUtf8(String text)
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ensureRoom(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Add a string of ASCII characters to the buffer. Use appendUtf8
+     * for text that may hold other characters, such as file names.
+     * @param text The text to add.
+     * @return This renderer, so that calls can be chained.
+     */
+    private ReportRenderer append(String text)
+    {
+        ensureRoom(text.length());
+        for(int i = 0; i < text.length(); i++) {
+            buffer[length++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Add one ASCII character to the buffer.
+     * @param c The character to add.
+     * @return This renderer, so that calls can be chained.
+     */
+    private ReportRenderer append(char c)
+    {
+        ensureRoom(1);
+        buffer[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Add the decimal digits of a number to the buffer.
+     * @param value The number to add.
+     * @return This renderer, so that calls can be chained.
+     */
+    private ReportRenderer append(long value)
+    {
+        ensureRoom(20);
+        if(value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        // Write the digits backwards, then reverse them.
+        int first = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while(value > 0);
+        for(int i = first, j = length - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+        return this;
+    }
+
+    /**
+     * Add a number to the buffer with two decimal places.
+     * @param value The number to add.
+     * @return This renderer, so that calls can be chained.
+     */
+    private ReportRenderer append(double value)
+    {
+        long hundredths = Math.round(value * 100);
+        if(hundredths < 0) {
+            append('-');
+            hundredths = -hundredths;
+        }
+        append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if(fraction < 10) {
+            append('0');
+        }
+        return append(fraction);
+    }
+
+    /**
+     * Add a string to the buffer as a quoted JSON string.
+     * Characters outside ASCII are written as \\u escapes.
+     * @param text The text to add.
+     */
+    private void appendJsonString(String text)
+    {
+        append('"');
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c == '"' || c == '\\') {
+                append('\\').append(c);
+            }
+            else if(c < 0x20 || c > 0x7e) {
+                append("\\u");
+                for(int shift = 12; shift >= 0; shift -= 4) {
+                    append(Character.forDigit((c >> shift) & 0xf, 16));
+                }
+            }
+            else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+    /**
+     * Make sure there is room for more bytes. The buffer is sized
+     * for the report in advance, so this rarely has to grow it.
+     * @param extra The number of bytes about to be added.
+     */
+    private void ensureRoom(int extra)
+    {
+        if(length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
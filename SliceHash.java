@@ -0,0 +1,67 @@
+/**
+ * Hash and compare ranges of a byte array without first
+ * turning them into Strings.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class SliceHash
+{
+    /**
+     * Return a 64-bit hash of part of a byte array.
+     * This is FNV-1a followed by a final mixing step, so that
+     * every bit of the result depends on every byte of the input.
+     * @param buffer The bytes to hash.
+     * @param start The index of the first byte.
+     * @param end The index one past the last byte.
+     * @return The hash value.
+     */
+    public static long hash(byte[] buffer, int start, int end)
+    {
+        long h = 0xcbf29ce484222325L;
+        for(int i = start; i < end; i++) {
+            h ^= buffer[i] & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Scramble the bits of a value (the MurmurHash3 finalizer).
+     * @param h The value to mix.
+     * @return The mixed value.
+     */
+    public static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Are two byte ranges identical?
+     * @param a The first array.
+     * @param aStart The start of the range in the first array.
+     * @param aEnd The end of the range in the first array.
+     * @param b The second array.
+     * @param bStart The start of the range in the second array.
+     * @param bEnd The end of the range in the second array.
+     * @return true if the ranges hold the same bytes.
+     */
+    public static boolean equal(byte[] a, int aStart, int aEnd,
+                                byte[] b, int bStart, int bEnd)
+    {
+        if(aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for(int i = aStart, j = bStart; i < aEnd; i++, j++) {
+            if(a[i] != b[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,289 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Track the most frequent keys in a stream using a fixed number
+ * of counters (the Space-Saving algorithm). Any key that occurs
+ * more than total/capacity times is guaranteed to be tracked, and
+ * each count is too high by at most its recorded error.
+ *
+ * Keys are ranges of a byte array. A key is copied only when it
+ * takes over a counter, so known keys cost no allocation.
+ *
+ * A hash index finds the counter for a key, and the counters are kept
+ * in a min-heap by count, so that the one to replace is always at the
+ * top. Each key offered costs a lookup and a short sift of the heap,
+ * however many keys are tracked.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class SpaceSavingCounter
+{
+    // The keys being tracked, their lengths and hashes.
+    private byte[][] keys;
+    private int[] keyLengths;
+    private long[] hashes;
+    // The (over-)estimated count for each key.
+    private long[] counts;
+    // How much of each count may belong to keys it replaced.
+    private long[] errors;
+    // The number of counters in use.
+    private int size;
+    // The counters ordered as a min-heap by count, and where each counter is in it.
+    private int[] heap;
+    private int[] heapPositions;
+    // Open-addressing index from key hash to counter; each entry is
+    // the counter index plus one, or 0 if the entry is empty.
+    private int[] index;
+
+    /**
+     * Create a counter that tracks a number of keys.
+     * @param capacity The number of keys to track.
+     */
+    public SpaceSavingCounter(int capacity)
+    {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        keys = new byte[capacity][];
+        keyLengths = new int[capacity];
+        hashes = new long[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapPositions = new int[capacity];
+        // At most half full, so that lookups stay short.
+        index = new int[Integer.highestOneBit(capacity) << 2];
+    }
+
+    /**
+     * Count one occurrence of a key.
+     * @param buffer The bytes holding the key.
+     * @param start The index of the first byte of the key.
+     * @param end The index one past the last byte of the key.
+     * @param hash The hash of the key, from SliceHash.
+     */
+    public void offer(byte[] buffer, int start, int end, long hash)
+    {
+        int known = lookup(buffer, start, end, hash);
+        if(known >= 0) {
+            counts[known]++;
+            siftDown(heapPositions[known]);
+            return;
+        }
+        long inherited = 0;
+        int slot;
+        if(size < keys.length) {
+            slot = size;
+            heap[size] = slot;
+            heapPositions[slot] = size;
+            size++;
+        }
+        else {
+            // Replace the least frequent key; its count becomes our error.
+            slot = heap[0];
+            inherited = counts[slot];
+            unindex(slot);
+        }
+        int length = end - start;
+        if(keys[slot] == null || keys[slot].length < length) {
+            keys[slot] = new byte[length];
+        }
+        System.arraycopy(buffer, start, keys[slot], 0, length);
+        keyLengths[slot] = length;
+        hashes[slot] = hash;
+        counts[slot] = inherited + 1;
+        errors[slot] = inherited;
+        index[emptyEntry(hash)] = slot + 1;
+        // A new counter starts at the bottom of the heap with the lowest
+        // count; a replaced one is at the top and has gained one.
+        if(inherited == 0) {
+            siftUp(heapPositions[slot]);
+        }
+        else {
+            siftDown(heapPositions[slot]);
+        }
+    }
+
+    /**
+     * Return the most frequent keys, most frequent first.
+     * @param n The most keys to return.
+     * @return The keys.
+     */
+    public String[] getTopKeys(int n)
+    {
+        Integer[] order = sortedSlots();
+        String[] top = new String[Math.min(n, size)];
+        for(int i = 0; i < top.length; i++) {
+            int slot = order[i];
+            top[i] = new String(keys[slot], 0, keyLengths[slot],
+                                StandardCharsets.ISO_8859_1);
+        }
+        return top;
+    }
+
+    /**
+     * Return the estimated count of a key.
+     * @param key The key to look up.
+     * @return Its estimated count, or 0 if it is not being tracked.
+     */
+    public long getCount(String key)
+    {
+        int slot = find(key);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * Return how much a key's count may be overestimated.
+     * @param key The key to look up.
+     * @return The maximum overcount, or 0 if it is not being tracked.
+     */
+    public long getError(String key)
+    {
+        int slot = find(key);
+        return slot < 0 ? 0 : errors[slot];
+    }
+
+    /**
+     * Print the most frequent keys with their counts.
+     * @param n The most keys to print.
+     */
+    public void printTop(int n)
+    {
+        for(String key : getTopKeys(n)) {
+            System.out.println(key + ": " + getCount(key));
+        }
+    }
+
+    /**
+     * Find the counter for a key.
+     * @param key The key to find.
+     * @return Its counter index, or -1 if it is not being tracked.
+     */
+    private int find(String key)
+    {
+        byte[] bytes = key.getBytes(StandardCharsets.ISO_8859_1);
+        return lookup(bytes, 0, bytes.length, SliceHash.hash(bytes, 0, bytes.length));
+    }
+
+    /**
+     * Find the counter for a key through the index.
+     * @param buffer The bytes holding the key.
+     * @param start The index of the first byte of the key.
+     * @param end The index one past the last byte of the key.
+     * @param hash The hash of the key.
+     * @return Its counter index, or -1 if it is not being tracked.
+     */
+    private int lookup(byte[] buffer, int start, int end, long hash)
+    {
+        int mask = index.length - 1;
+        for(int i = (int) hash & mask; index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if(hashes[slot] == hash
+               && SliceHash.equal(keys[slot], 0, keyLengths[slot], buffer, start, end)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the empty index entry where a key with this hash belongs.
+     * @param hash The hash of the key.
+     * @return The index entry.
+     */
+    private int emptyEntry(long hash)
+    {
+        int mask = index.length - 1;
+        int i = (int) hash & mask;
+        while(index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Remove a counter from the index. The entries after it are
+     * moved back where they can be, so that no lookup stops short.
+     * @param slot The counter to remove.
+     */
+    private void unindex(int slot)
+    {
+        int mask = index.length - 1;
+        int hole = (int) hashes[slot] & mask;
+        while(index[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        index[hole] = 0;
+        for(int i = (hole + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int home = (int) hashes[index[i] - 1] & mask;
+            // Move the entry if the hole lies between its home and where it is.
+            if(((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                index[i] = 0;
+                hole = i;
+            }
+        }
+    }
+
+    /**
+     * Move a counter up the heap until its parent's count is no larger.
+     * @param position The counter's position in the heap.
+     */
+    private void siftUp(int position)
+    {
+        int slot = heap[position];
+        while(position > 0) {
+            int parent = (position - 1) / 2;
+            if(counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            heap[position] = heap[parent];
+            heapPositions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * Move a counter down the heap until no child has a smaller count.
+     * @param position The counter's position in the heap.
+     */
+    private void siftDown(int position)
+    {
+        int slot = heap[position];
+        while(true) {
+            int child = 2 * position + 1;
+            if(child >= size) {
+                break;
+            }
+            if(child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if(counts[heap[child]] >= counts[slot]) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * Return the counter indexes in order of decreasing count.
+     * @return The sorted indexes.
+     */
+    private Integer[] sortedSlots()
+    {
+        Integer[] order = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        return order;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Describe one period of unusual traffic found by a
+ * TrafficAnomalyDetector: when it started, how many accesses
+ * were seen and the range that was expected.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class TrafficAnomaly
+{
+    // The first minute of the period, counted from 1st January 1970.
+    private long startMinute;
+    // The length of the period in minutes.
+    private int lengthMinutes;
+    // The number of accesses seen in the period.
+    private int observed;
+    // The number of accesses the baseline predicted.
+    private double expected;
+    // The range of counts that would not have been reported.
+    private double lower, upper;
+
+    /**
+     * Create a record of an anomalous period.
+     * @param startMinute The first minute of the period (minutes since 1970).
+     * @param lengthMinutes The length of the period in minutes.
+     * @param observed The number of accesses seen.
+     * @param expected The number of accesses predicted.
+     * @param lower The lowest count that would have been normal.
+     * @param upper The highest count that would have been normal.
+     */
+    public TrafficAnomaly(long startMinute, int lengthMinutes, int observed,
+                          double expected, double lower, double upper)
+    {
+        this.startMinute = startMinute;
+        this.lengthMinutes = lengthMinutes;
+        this.observed = observed;
+        this.expected = expected;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Return the start of the period as a LogEntry.
+     * @return A LogEntry holding the date and time the period started.
+     */
+    public LogEntry getStart()
+    {
+        return LogEntry.fromEpochMinute(startMinute);
+    }
+
+    /**
+     * Return the first minute of the period.
+     * @return The number of minutes since 1st January 1970.
+     */
+    public long getStartMinute()
+    {
+        return startMinute;
+    }
+
+    /**
+     * Return the length of the period.
+     * @return The length in minutes (1 or 60).
+     */
+    public int getLengthMinutes()
+    {
+        return lengthMinutes;
+    }
+
+    /**
+     * Return the number of accesses seen in the period.
+     * @return The observed access count.
+     */
+    public int getObserved()
+    {
+        return observed;
+    }
+
+    /**
+     * Return the number of accesses the baseline predicted.
+     * @return The expected access count.
+     */
+    public double getExpected()
+    {
+        return expected;
+    }
+
+    /**
+     * Return the lowest count that would have been normal.
+     * @return The lower bound.
+     */
+    public double getLower()
+    {
+        return lower;
+    }
+
+    /**
+     * Return the highest count that would have been normal.
+     * @return The upper bound.
+     */
+    public double getUpper()
+    {
+        return upper;
+    }
+
+    /**
+     * Is this a spike (more traffic than expected)?
+     * @return true for a spike, false for a drop.
+     */
+    public boolean isSpike()
+    {
+        return observed > upper;
+    }
+
+    /**
+     * Create a string representation of the anomaly.
+     * @return A one line description of the anomaly.
+     */
+    public String toString()
+    {
+        return String.format("%s %s: %d accesses, expected %.1f (normal %.1f to %.1f)",
+                             getStart(), isSpike() ? "spike" : "drop",
+                             observed, expected, lower, upper);
+    }
+}
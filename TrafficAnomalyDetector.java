@@ -0,0 +1,332 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Watch a time-ordered stream of log entries and report periods
+ * (minutes or hours) whose access count is unusually high or low.
+ *
+ * The baseline is an exponentially weighted moving average (EWMA) of
+ * the count per period, scaled by an hour-of-day and a day-of-week
+ * profile. The hour profile is learned once a day, from how each
+ * complete day's traffic was spread over its hours, and the day
+ * profile once a week, from how each complete week's traffic was
+ * spread over its days. Only a fixed number of values are kept,
+ * however long the log is, and each entry costs a few integer
+ * operations, so the detector can be fed inline while a log is read.
+ * After a gap of more than a week the baseline starts again rather
+ * than stepping through every empty period.
+ *
+ * @author Karen Stagg
+ * @version October 19, 2020
+ */
+public class TrafficAnomalyDetector
+{
+    // Seasonal factors are never allowed to fall below this, so that a
+    // quiet hour can still recover from a run of empty periods.
+    private static final double MIN_FACTOR = 0.05;
+    // How quickly the spread follows new errors. This is slower than
+    // the level so that a few lucky periods do not narrow the band.
+    private static final double SPREAD_SMOOTHING = 0.02;
+    // A gap longer than this restarts the baseline.
+    private static final int MAX_GAP_MINUTES = 7 * 1440;
+    // Marks that no day is being profiled.
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    // The length of one period in minutes (1 or 60).
+    private int periodMinutes;
+    // How quickly the level follows new counts (0-1).
+    private double alpha;
+    // How quickly the hour and day profiles follow each new day or week (0-1).
+    private double gamma;
+    // How many standard deviations away a count must be to be reported.
+    private double threshold;
+    // The smallest distance from the expected count that is reported.
+    private double minDeviation;
+    // How many periods to learn from before reporting anything.
+    private int warmupPeriods;
+    // Who to tell about each anomaly.
+    private Consumer<TrafficAnomaly> listener;
+
+    // The smoothed, deseasonalised count per period.
+    private double level;
+    // The smoothed squared difference between counts and predictions.
+    private double variance;
+    // Relative traffic for each hour of the day and each day of the week.
+    private double[] hourFactors;
+    private double[] dayFactors;
+    // How many complete days and weeks the profiles have learned from.
+    private int daysLearned;
+    private int weeksLearned;
+
+    // The day being profiled, its count for each hour, and whether
+    // it has been seen from midnight.
+    private long profileDay;
+    private double[] dayHourCounts;
+    private boolean profileDayComplete;
+    // The count for each day of the week being profiled, and whether
+    // every day of it has been seen in full.
+    private double[] weekDayCounts;
+    private boolean profileWeekComplete;
+
+    // The period currently being counted, and its count.
+    private long currentPeriod;
+    private int currentCount;
+    // Whether any entry has been seen yet.
+    private boolean started;
+    // How many periods have been closed.
+    private long periodsSeen;
+    // How many anomalies have been reported.
+    private int anomalyCount;
+
+    /**
+     * Create a detector for hourly traffic that prints each
+     * anomaly it finds. A count is reported when it is more than
+     * three standard deviations from the baseline.
+     */
+    public TrafficAnomalyDetector()
+    {
+        this(60, 0.3, 0.1, 3.0, 2.0, 24, null);
+    }
+
+    /**
+     * Create a detector with chosen settings.
+     * @param periodMinutes The length of a period: 1 (per minute) or 60 (per hour).
+     * @param alpha Smoothing for the level (0-1).
+     * @param gamma Smoothing for the hour profile (per day) and day profile (per week) (0-1).
+     * @param threshold The number of standard deviations that is unusual.
+     * @param minDeviation The smallest difference from the baseline to report.
+     * @param warmupPeriods The number of periods to learn before reporting.
+     * @param listener Where to send anomalies; null prints them.
+     */
+    public TrafficAnomalyDetector(int periodMinutes, double alpha, double gamma,
+                                  double threshold, double minDeviation,
+                                  int warmupPeriods, Consumer<TrafficAnomaly> listener)
+    {
+        if(periodMinutes != 1 && periodMinutes != 60) {
+            throw new IllegalArgumentException("Period must be 1 or 60 minutes: "
+                                               + periodMinutes);
+        }
+        this.periodMinutes = periodMinutes;
+        this.alpha = alpha;
+        this.gamma = gamma;
+        this.threshold = threshold;
+        this.minDeviation = minDeviation;
+        this.warmupPeriods = warmupPeriods;
+        if(listener == null) {
+            listener = anomaly -> System.out.println(anomaly);
+        }
+        this.listener = listener;
+
+        hourFactors = new double[24];
+        dayFactors = new double[7];
+        Arrays.fill(hourFactors, 1.0);
+        Arrays.fill(dayFactors, 1.0);
+        dayHourCounts = new double[24];
+        weekDayCounts = new double[7];
+        profileDay = NO_DAY;
+    }
+
+    /**
+     * Count one log entry. Entries must arrive in time order;
+     * an entry earlier than the current period is counted in it.
+     * @param entry The entry to count.
+     */
+    public void addEntry(LogEntry entry)
+    {
+        add(entry.getEpochMinute());
+    }
+
+    /**
+     * Count one access at a given minute.
+     * @param epochMinute The minute of the access (minutes since 1970).
+     */
+    public void add(long epochMinute)
+    {
+        long period = Math.floorDiv(epochMinute, (long) periodMinutes);
+        if(!started) {
+            currentPeriod = period;
+            started = true;
+        }
+        if(period - currentPeriod > MAX_GAP_MINUTES / periodMinutes) {
+            // Too long to step through: start the baseline again.
+            closePeriod(currentPeriod, currentCount);
+            restart();
+            currentPeriod = period;
+            currentCount = 0;
+        }
+        // Close every period up to this one, including empty ones.
+        while(period > currentPeriod) {
+            closePeriod(currentPeriod, currentCount);
+            currentPeriod++;
+            currentCount = 0;
+        }
+        currentCount++;
+    }
+
+    /**
+     * Close the period still being counted. Call this once the
+     * stream has ended so that the last period is checked.
+     */
+    public void finish()
+    {
+        if(started) {
+            closePeriod(currentPeriod, currentCount);
+            currentPeriod++;
+            currentCount = 0;
+        }
+    }
+
+    /**
+     * Return the number of anomalies reported so far.
+     * @return The anomaly count.
+     */
+    public int getAnomalyCount()
+    {
+        return anomalyCount;
+    }
+
+    /**
+     * Return the current baseline level (deseasonalised count per period).
+     * @return The smoothed level.
+     */
+    public double getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Forget the level, spread and partly profiled day and week,
+     * keeping the hour and day profiles already learned.
+     */
+    private void restart()
+    {
+        level = 0;
+        variance = 0;
+        periodsSeen = 0;
+        profileDay = NO_DAY;
+        profileWeekComplete = false;
+        Arrays.fill(dayHourCounts, 0);
+        Arrays.fill(weekDayCounts, 0);
+    }
+
+    /**
+     * Compare a finished period with the baseline, report it if
+     * it is unusual, and then let the baseline learn from it.
+     * @param period The period number.
+     * @param count The number of accesses in the period.
+     */
+    private void closePeriod(long period, int count)
+    {
+        long startMinute = period * periodMinutes;
+        long epochDay = Math.floorDiv(startMinute, 1440L);
+        int minuteOfDay = (int) Math.floorMod(startMinute, 1440L);
+        int hour = minuteOfDay / 60;
+        int weekday = weekday(epochDay);
+        if(epochDay != profileDay) {
+            if(profileDay != NO_DAY) {
+                closeDay();
+            }
+            profileDay = epochDay;
+            profileDayComplete = minuteOfDay == 0;
+            if(weekday == 0) {
+                profileWeekComplete = profileDayComplete;
+            }
+        }
+        double factor = hourFactors[hour] * dayFactors[weekday];
+        // The count the baseline learns from; an anomaly is held to the
+        // edge of the normal range so that it does not skew the profiles.
+        double learned = count;
+
+        if(periodsSeen == 0) {
+            // Nothing to compare with: start the baseline here.
+            level = count / factor;
+        }
+        else {
+            double expected = level * factor;
+            double band = Math.max(threshold * Math.sqrt(variance), minDeviation);
+            if(periodsSeen >= warmupPeriods && daysLearned > 0
+               && (count > expected + band || count < expected - band)) {
+                anomalyCount++;
+                listener.accept(new TrafficAnomaly(startMinute, periodMinutes, count,
+                                                   expected, Math.max(0, expected - band),
+                                                   expected + band));
+                learned = Math.max(expected - band, Math.min(expected + band, count));
+            }
+            double error = learned - expected;
+            variance = (1 - SPREAD_SMOOTHING)
+                       * (variance + SPREAD_SMOOTHING * error * error);
+            // Weight each period by its factor, so that the noise in
+            // quiet hours is not magnified when it is deseasonalised.
+            level += Math.min(1.0, alpha * factor) * (learned / factor - level);
+        }
+        dayHourCounts[hour] += learned;
+
+        periodsSeen++;
+    }
+
+    /**
+     * Finish profiling a day. If the whole day was seen, move each
+     * hour's factor towards its share of the day's traffic. Add the
+     * day to the week, and finish the week after a Saturday.
+     */
+    private void closeDay()
+    {
+        int weekday = weekday(profileDay);
+        double total = 0;
+        for(double count : dayHourCounts) {
+            total += count;
+        }
+        if(profileDayComplete && total > 0) {
+            // Average the first few days fully, then smooth with gamma.
+            double rate = Math.max(gamma, 1.0 / (daysLearned + 1));
+            double mean = total / 24.0;
+            for(int hour = 0; hour < 24; hour++) {
+                hourFactors[hour] = Math.max(MIN_FACTOR, hourFactors[hour]
+                    + rate * (dayHourCounts[hour] / mean - hourFactors[hour]));
+            }
+            daysLearned++;
+        }
+        if(!profileDayComplete) {
+            profileWeekComplete = false;
+        }
+        weekDayCounts[weekday] = total;
+        Arrays.fill(dayHourCounts, 0);
+        if(weekday == 6) {
+            closeWeek();
+        }
+    }
+
+    /**
+     * Finish profiling a week. If the whole week was seen, move each
+     * weekday's factor towards its share of the week's traffic.
+     */
+    private void closeWeek()
+    {
+        double total = 0;
+        for(double count : weekDayCounts) {
+            total += count;
+        }
+        if(profileWeekComplete && total > 0) {
+            double rate = Math.max(gamma, 1.0 / (weeksLearned + 1));
+            double mean = total / 7.0;
+            for(int day = 0; day < 7; day++) {
+                dayFactors[day] = Math.max(MIN_FACTOR, dayFactors[day]
+                    + rate * (weekDayCounts[day] / mean - dayFactors[day]));
+            }
+            weeksLearned++;
+        }
+        profileWeekComplete = false;
+        Arrays.fill(weekDayCounts, 0);
+    }
+
+    /**
+     * Return the day of the week for a day number.
+     * @param epochDay The number of days since 1st January 1970.
+     * @return The day of the week, 0 for Sunday to 6 for Saturday.
+     */
+    private static int weekday(long epochDay)
+    {
+        // 1st January 1970 was a Thursday.
+        return (int) Math.floorMod(epochDay + 4, 7L);
+    }
+}